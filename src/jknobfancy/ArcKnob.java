@@ -4,16 +4,29 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Stroke;
+import java.awt.geom.Arc2D;
 import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.ImageIcon;
 
 /**
- * This class extends JKnobFancy by drawing an arc between two handles. If the object is
- * initialized with three handles, the arc will be drawn between the second and third handles. The
+ * This class extends JKnobFancy by drawing arcs between pairs of handles. If the object is
+ * initialized with three handles, an arc will be drawn between the second and third handles. The
  * intent of this is that the first handle would represent a pointer and the second and third 
  * handles would represent a range on the knob.
+ * <br><br>
+ * Additional arcs may be added between any two handles with {@link #addArc(int, int, Color)}
+ * so that several ranges (e.g. zones or keysplits) can be shown on one knob. All arcs
+ * sharing a color are collected into a single path and filled with one call, and that
+ * path is only rebuilt when one of its handles moves.
  * 
  * @author Michael Ploof
  *
@@ -21,16 +34,94 @@ import javax.swing.ImageIcon;
 public class ArcKnob extends JKnobFancy{
 
 	private static final long serialVersionUID = 3629098161796965896L;
-	private int initHandles;
+	private static final Stroke HANDLE_LINE_STROKE = new BasicStroke(3);
 	private Color arcColor;
-	private double arcStartDeg;
-	private double arcSizeDeg;
+	/**
+	 * Arc created by the handle count based init methods, or null if there is none
+	 */
+	private ArcSegment defaultArc;
+	/**
+	 * All arcs on the knob in the order they were added
+	 */
+	private List<ArcSegment> arcs = new ArrayList<ArcSegment>();
+	/**
+	 * Arcs grouped by fill color. Rebuilt whenever an arc is added, removed or recolored.
+	 */
+	private transient Map<Color, ArcGroup> arcGroups;
+	/**
+	 * Arc bounds the cached paths were built with
+	 */
+	private transient int arcX, arcY, arcDia;
+
+	//~~~~~~~~ Arc Classes ~~~~~~~~//
+	/**
+	 * Describes an arc drawn from one handle to another in the counterclockwise direction
+	 */
+	public static class ArcSegment implements Serializable{
+
+		private static final long serialVersionUID = 1L;
+
+		private final int startHandle;
+		private final int stopHandle;
+		private Color color;
+		private double startDeg;
+		private double sizeDeg;
+
+		private ArcSegment(int startHandle, int stopHandle, Color color){
+			this.startHandle = startHandle;
+			this.stopHandle = stopHandle;
+			this.color = color;
+		}
+
+		/**
+		 * @return index of the handle at which the arc starts
+		 */
+		public int getStartHandle(){
+			return startHandle;
+		}
+
+		/**
+		 * @return index of the handle at which the arc stops
+		 */
+		public int getStopHandle(){
+			return stopHandle;
+		}
+
+		/**
+		 * @return the arc fill color
+		 */
+		public Color getColor(){
+			return color;
+		}
+
+		/**
+		 * @return the arc start position in degrees as of the last paint
+		 */
+		public double getStartDeg(){
+			return startDeg;
+		}
+
+		/**
+		 * @return the arc size in degrees as of the last paint
+		 */
+		public double getSizeDeg(){
+			return sizeDeg;
+		}
+	}
+
+	/**
+	 * All arcs of a single color and the path they are filled with
+	 */
+	private static class ArcGroup{
+		final List<ArcSegment> segments = new ArrayList<ArcSegment>();
+		final Path2D.Double path = new Path2D.Double();
+		boolean dirty = true;
+	}
 	
 	/**
 	 * Empty constructor so the ArcKnob may be instantiated before being full initialized
 	 */
 	public ArcKnob(){
-		this.initHandles = 0;
 		setDefaultArcColor();
 	}
 	
@@ -83,8 +174,8 @@ public class ArcKnob extends JKnobFancy{
 				handleIcon0);		
 		this.addHandle(initDeg1, handleIcon1);
 		this.addHandle(initDeg2, handleIcon2);
-		this.initHandles = 3;
 		setDefaultArcColor();
+		setDefaultArc(1, 2);
 	}
 	
 	public void init(double initDeg0, ImageIcon handleIcon0, double initDeg1, ImageIcon handleIcon1,
@@ -93,63 +184,209 @@ public class ArcKnob extends JKnobFancy{
 		super.init(initDeg0, relCenter, relTrackRadius, backgroundIcon, backgroundWidth, 
 				handleIcon0);
 		this.addHandle(initDeg1, handleIcon1);
-		this.initHandles = 2;
 		setDefaultArcColor();
+		setDefaultArc(0, 1);
 	}
 	
 	private void setDefaultArcColor(){
 		arcColor = new Color(255, 0, 255, 120);
 	}
 	
+	private void setDefaultArc(int startHandle, int stopHandle){
+		if(defaultArc != null)
+			arcs.remove(defaultArc);
+		defaultArc = new ArcSegment(startHandle, stopHandle, arcColor);
+		arcs.add(0, defaultArc);
+		arcGroups = null;
+	}
+
+	/**
+	 * Sets the color of the handle lines and of the arc created by the init methods
+	 * @param color the new color
+	 */
 	public void setArcColor(Color color){
 		arcColor = color;
+		if(defaultArc != null)
+			setArcColor(arcs.indexOf(defaultArc), color);
 	}
 	
 	public Color getArcColor(){
 		return arcColor;
 	}
 	
+	/**
+	 * @return start position in degrees of the first arc on the knob
+	 */
 	public double getArcStartDeg(){
-		return arcStartDeg;		
+		return arcs.isEmpty() ? 0 : arcs.get(0).getStartDeg();
 	}
 	
+	/**
+	 * @return size in degrees of the first arc on the knob
+	 */
 	public double getArcSizeDeg(){
-		return arcSizeDeg;		
+		return arcs.isEmpty() ? 0 : arcs.get(0).getSizeDeg();
+	}
+
+	//~~~~~~~~ Arc Segments ~~~~~~~~//
+	/**
+	 * Adds an arc drawn counterclockwise from one handle to another
+	 * @param startHandle index of the handle at which the arc starts
+	 * @param stopHandle index of the handle at which the arc stops
+	 * @param color fill color of the arc
+	 * @return index of the new arc
+	 */
+	public int addArc(int startHandle, int stopHandle, Color color){
+		arcs.add(new ArcSegment(startHandle, stopHandle, color));
+		arcGroups = null;
+		repaintIfVisible();
+		return arcs.size() - 1;
+	}
+
+	/**
+	 * Adds an arc between two handles using the knob's arc color
+	 * @param startHandle index of the handle at which the arc starts
+	 * @param stopHandle index of the handle at which the arc stops
+	 * @return index of the new arc
+	 */
+	public int addArc(int startHandle, int stopHandle){
+		return addArc(startHandle, stopHandle, arcColor);
+	}
+
+	/**
+	 * Removes an arc from the knob
+	 * @param which index of the arc to remove
+	 */
+	public void removeArc(int which){
+		ArcSegment removed = arcs.remove(which);
+		if(removed == defaultArc)
+			defaultArc = null;
+		arcGroups = null;
+		repaintIfVisible();
+	}
+
+	/**
+	 * Removes all arcs from the knob
+	 */
+	public void clearArcs(){
+		arcs.clear();
+		defaultArc = null;
+		arcGroups = null;
+		repaintIfVisible();
+	}
+
+	/**
+	 * @param which index of the arc
+	 * @param color the new fill color of the arc
+	 */
+	public void setArcColor(int which, Color color){
+		arcs.get(which).color = color;
+		arcGroups = null;
+		repaintIfVisible();
+	}
+
+	/**
+	 * @param which index of the arc
+	 * @return the arc
+	 */
+	public ArcSegment getArc(int which){
+		return arcs.get(which);
+	}
+
+	/**
+	 * @return number of arcs on the knob
+	 */
+	public int getArcCount(){
+		return arcs.size();
+	}
+
+	/**
+	 * Sorts the arcs into one group per color
+	 */
+	private void buildArcGroups(){
+		arcGroups = new LinkedHashMap<Color, ArcGroup>();
+		for(ArcSegment thisArc : arcs){
+			ArcGroup group = arcGroups.get(thisArc.color);
+			if(group == null){
+				group = new ArcGroup();
+				arcGroups.put(thisArc.color, group);
+			}
+			group.segments.add(thisArc);
+		}
+	}
+
+	/**
+	 * Updates the arc positions from their handles and marks the group of any
+	 * arc that moved so that its path is rebuilt.
+	 */
+	private void updateArcs(){
+		if(arcGroups == null)
+			buildArcGroups();
+
+		int handleDia = handles.isEmpty() ? 0 : this.getHandle(0).getRadius() * 2;
+		int x = center.x - trackRadius + handleDia;
+		int y = center.y - trackRadius + handleDia;
+		int dia = (trackRadius - handleDia) * 2;
+		boolean boundsChanged = x != arcX || y != arcY || dia != arcDia;
+		arcX = x;
+		arcY = y;
+		arcDia = dia;
+
+		for(ArcGroup group : arcGroups.values()){
+			if(boundsChanged)
+				group.dirty = true;
+			for(ArcSegment thisArc : group.segments){
+				if(thisArc.startHandle >= handles.size() || thisArc.stopHandle >= handles.size())
+					continue;
+				double startDeg = (int)handles.get(thisArc.startHandle).getAngleDeg();
+				double sizeDeg = (int)handles.get(thisArc.stopHandle).getAngleDeg() - startDeg;
+				sizeDeg = sizeDeg < 0 ? 360 + sizeDeg : sizeDeg;
+				if(startDeg != thisArc.startDeg || sizeDeg != thisArc.sizeDeg){
+					thisArc.startDeg = startDeg;
+					thisArc.sizeDeg = sizeDeg;
+					group.dirty = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds the path of a group from the current positions of its arcs
+	 */
+	private void buildPath(ArcGroup group){
+		Arc2D.Double arc = new Arc2D.Double();
+		group.path.reset();
+		for(ArcSegment thisArc : group.segments){
+			if(thisArc.startHandle >= handles.size() || thisArc.stopHandle >= handles.size()
+					|| thisArc.sizeDeg == 0)
+				continue;
+			arc.setArc(arcX, arcY, arcDia, arcDia, thisArc.startDeg, thisArc.sizeDeg, Arc2D.PIE);
+			group.path.append(arc, false);
+		}
+		group.dirty = false;
 	}
 
 	@Override
-	public void paint(Graphics g){
-		super.paint(g);
+	protected void paintKnob(Graphics g){
+		super.paintKnob(g);
 		Graphics2D g2 = (Graphics2D) g;
 		
 		// Set transparent magenta fill for arc
 		g2.setColor(arcColor);
+		g2.setStroke(HANDLE_LINE_STROKE);
 		
 		for(JKnobHandle thisHandle : handles){
-			g2.setStroke(new BasicStroke(3));
 			g2.draw(new Line2D.Float(center, thisHandle.getCenterEdgePoint()));
 		}
 		
-		// Draw arc
-		int startHandle = 0;
-		int stopHandle = 0;
-		if(this.initHandles == 3){
-			startHandle = 1;
-			stopHandle = 2;
-		}
-		else if(this.initHandles == 2){
-			startHandle = 0;
-			stopHandle = 1;
-		}
-		if(handles.size() >= 2 && initHandles >= 2){
-			arcStartDeg = (int)handles.get(startHandle).getAngleDeg();
-			arcSizeDeg = (int)handles.get(stopHandle).getAngleDeg() - 
-					(int)handles.get(startHandle).getAngleDeg(); 
-			arcSizeDeg = arcSizeDeg < 0 ? 360 + arcSizeDeg : arcSizeDeg;			
-			int handleDia = this.getHandle(0).getRadius() * 2;
-			g2.fillArc(center.x - trackRadius + handleDia, center.y - trackRadius + handleDia, 
-					(trackRadius - handleDia) * 2, (trackRadius - handleDia) * 2, 
-					(int)arcStartDeg, (int)arcSizeDeg);
+		// Draw arcs, one fill per color
+		updateArcs();
+		for(Map.Entry<Color, ArcGroup> entry : arcGroups.entrySet()){
+			ArcGroup group = entry.getValue();
+			if(group.dirty)
+				buildPath(group);
+			g2.setColor(entry.getKey());
+			g2.fill(group.path);
 		}
 	}
 }
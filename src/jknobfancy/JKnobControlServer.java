@@ -0,0 +1,378 @@
+package jknobfancy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jknobfancy.JKnobFancy.JKnobHandle;
+
+/**
+ * A local control endpoint that lets other processes on the same machine read and write
+ * the handles of registered knobs. The server listens either on a loopback TCP port or
+ * on a Unix domain socket and is served by a single NIO thread.
+ * <br><br>
+ * The protocol is binary and big-endian. Every request is {@value #REQUEST_SIZE} bytes:
+ * <pre>
+ *   byte   opcode   (OP_GET_ANGLE, OP_GET_VAL, OP_SET_ANGLE or OP_SET_VAL)
+ *   short  knob id  (unsigned, as given to {@link #register(int, JKnobFancy)})
+ *   byte   handle   (unsigned handle index)
+ *   double value    (ignored for gets)
+ * </pre>
+ * Get requests are answered with {@value #RESPONSE_SIZE} bytes, in request order:
+ * <pre>
+ *   byte   status   (STATUS_OK or STATUS_UNKNOWN_HANDLE)
+ *   double value    (angle in degrees or handle value, NaN on error)
+ * </pre>
+ * Set requests are not answered. Sets for unknown handles are ignored. An unknown opcode
+ * closes the connection.
+ * <br><br>
+ * Sets are not applied immediately. Only the latest set for each handle is kept and all
+ * of them are applied together on the event dispatch thread once per frame, followed by
+ * a single repaint of each affected knob. Gets report the state of the knob as of the
+ * last applied frame.
+ */
+public class JKnobControlServer implements Closeable {
+
+	public static final byte OP_GET_ANGLE = 1;
+	public static final byte OP_GET_VAL = 2;
+	public static final byte OP_SET_ANGLE = 3;
+	public static final byte OP_SET_VAL = 4;
+
+	public static final byte STATUS_OK = 0;
+	public static final byte STATUS_UNKNOWN_HANDLE = 1;
+
+	public static final int REQUEST_SIZE = 12;
+	public static final int RESPONSE_SIZE = 9;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int DEFAULT_FRAME_PERIOD = 16;
+
+	private final SocketAddress address;
+	private final Map<Integer, JKnobFancy> knobs = new ConcurrentHashMap<Integer, JKnobFancy>();
+	private final JKnobUpdateBatcher batcher = new JKnobUpdateBatcher(DEFAULT_FRAME_PERIOD);
+
+	private ServerSocketChannel serverChannel;
+	private Selector selector;
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * @param address the address to listen on. This should be a loopback
+	 * 		InetSocketAddress or a UnixDomainSocketAddress.
+	 */
+	public JKnobControlServer(SocketAddress address){
+		this.address = address;
+	}
+
+	/**
+	 * @param port loopback port to listen on, or 0 for any free port
+	 * @return a server listening on the loopback interface
+	 */
+	public static JKnobControlServer loopback(int port){
+		return new JKnobControlServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	/**
+	 * @param path file system path of the socket
+	 * @return a server listening on a Unix domain socket
+	 */
+	public static JKnobControlServer unixDomain(Path path){
+		return new JKnobControlServer(UnixDomainSocketAddress.of(path));
+	}
+
+	/**
+	 * Makes a knob available to clients
+	 * @param id the id clients use to address the knob (0-65535)
+	 * @param knob the knob
+	 */
+	public void register(int id, JKnobFancy knob){
+		if(id < 0 || id > 0xFFFF)
+			throw new IllegalArgumentException("Knob id out of range: " + id);
+		knobs.put(id, knob);
+	}
+
+	/**
+	 * Removes a knob from the server. Updates that have not been applied yet are dropped.
+	 * @param id the id the knob was registered with
+	 */
+	public void unregister(int id){
+		JKnobFancy knob = knobs.remove(id);
+		if(knob != null)
+			batcher.remove(knob);
+	}
+
+	/**
+	 * @param framePeriod minimum time in milliseconds between two batches of
+	 * 		updates being applied
+	 */
+	public void setFramePeriod(int framePeriod){
+		batcher.setFramePeriod(framePeriod);
+	}
+
+	/**
+	 * Binds the socket and starts the server thread
+	 * @throws IOException if the socket could not be bound
+	 */
+	public synchronized void start() throws IOException{
+		if(running)
+			return;
+		// Clean up after a server thread that stopped on its own
+		if(thread != null)
+			close();
+		if(address instanceof UnixDomainSocketAddress)
+			serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		else
+			serverChannel = ServerSocketChannel.open();
+		try{
+			bind();
+			serverChannel.configureBlocking(false);
+			selector = Selector.open();
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		}
+		catch(IOException e){
+			serverChannel.close();
+			if(selector != null)
+				selector.close();
+			throw e;
+		}
+
+		running = true;
+		thread = new Thread(new Runnable(){
+			@Override
+			public void run(){
+				serve();
+			}
+		}, "JKnobControlServer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Binds the server channel. A Unix domain socket file left behind by a server that
+	 * did not shut down cleanly is removed first, as long as nothing is listening on it.
+	 */
+	private void bind() throws IOException{
+		try{
+			serverChannel.bind(address);
+		}
+		catch(BindException e){
+			if(!(address instanceof UnixDomainSocketAddress) || isListening())
+				throw e;
+			Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+			serverChannel.bind(address);
+		}
+	}
+
+	/**
+	 * @return whether another server accepts connections on the address
+	 */
+	private boolean isListening(){
+		try{
+			SocketChannel.open(address).close();
+			return true;
+		}
+		catch(IOException e){
+			return false;
+		}
+	}
+
+	/**
+	 * @return the address the server is bound to, e.g. to find the port
+	 * 		when started with port 0
+	 * @throws IOException if the address could not be read
+	 */
+	public SocketAddress getLocalAddress() throws IOException{
+		return serverChannel.getLocalAddress();
+	}
+
+	/**
+	 * Stops the server, closes all connections and removes the Unix domain socket
+	 * file, if any. Also cleans up after a server thread that stopped on its own.
+	 */
+	@Override
+	public synchronized void close() throws IOException{
+		if(thread == null)
+			return;
+		running = false;
+		selector.wakeup();
+		try{
+			thread.join();
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+		selector = null;
+		if(address instanceof UnixDomainSocketAddress)
+			Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+	}
+
+	//~~~~~~~~ Server Thread ~~~~~~~~//
+	private void serve(){
+		try{
+			while(running){
+				selector.select();
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while(it.hasNext()){
+					SelectionKey key = it.next();
+					it.remove();
+					try{
+						if(!key.isValid())
+							continue;
+						if(key.isAcceptable())
+							accept();
+						else{
+							Connection connection = (Connection) key.attachment();
+							if(key.isReadable())
+								connection.read();
+							if(key.isValid() && key.isWritable())
+								connection.write();
+						}
+					}
+					catch(IOException e){
+						closeChannel(key);
+					}
+				}
+			}
+		}
+		catch(IOException e){
+			running = false;
+		}
+		finally{
+			for(SelectionKey key : selector.keys()){
+				closeChannel(key);
+			}
+			try{
+				selector.close();
+			}
+			catch(IOException e){
+				// Closing anyway
+			}
+		}
+	}
+
+	private void closeChannel(SelectionKey key){
+		key.cancel();
+		try{
+			key.channel().close();
+		}
+		catch(IOException e){
+			// Closing anyway
+		}
+	}
+
+	private void accept() throws IOException{
+		SocketChannel channel = serverChannel.accept();
+		if(channel == null)
+			return;
+		channel.configureBlocking(false);
+		SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+		key.attach(new Connection(channel, key));
+	}
+
+	/**
+	 * Runs on the server thread. The knob's handle list is copied on write, so it
+	 * can be read here while handles are added on the EDT.
+	 */
+	private JKnobHandle lookupHandle(int id, int which){
+		JKnobFancy knob = knobs.get(id);
+		if(knob == null)
+			return null;
+		List<JKnobHandle> handles = knob.handles;
+		return which < handles.size() ? handles.get(which) : null;
+	}
+
+	//~~~~~~~~ Connection Class ~~~~~~~~//
+	/**
+	 * Buffers of a single client connection. Only used on the server thread.
+	 */
+	private class Connection{
+
+		private final SocketChannel channel;
+		private final SelectionKey key;
+		private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		private Connection(SocketChannel channel, SelectionKey key){
+			this.channel = channel;
+			this.key = key;
+		}
+
+		private void read() throws IOException{
+			if(channel.read(in) < 0)
+				throw new IOException("Connection closed");
+			process();
+			write();
+		}
+
+		private void write() throws IOException{
+			for(;;){
+				out.flip();
+				channel.write(out);
+				out.compact();
+				// Requests left waiting while the output buffer was full
+				int waiting = in.position();
+				if(waiting < REQUEST_SIZE || out.remaining() < RESPONSE_SIZE)
+					break;
+				process();
+				if(in.position() == waiting)
+					break;
+			}
+			// Stop reading while responses can't be sent
+			key.interestOps(out.position() > 0 ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		}
+
+		/**
+		 * Handles all complete requests in the input buffer, as long as there is
+		 * room for their responses
+		 */
+		private void process() throws IOException{
+			in.flip();
+			while(in.remaining() >= REQUEST_SIZE && out.remaining() >= RESPONSE_SIZE){
+				byte op = in.get();
+				int id = in.getShort() & 0xFFFF;
+				int which = in.get() & 0xFF;
+				double value = in.getDouble();
+
+				JKnobHandle handle = lookupHandle(id, which);
+				switch(op){
+				case OP_GET_ANGLE:
+					out.put(handle == null ? STATUS_UNKNOWN_HANDLE : STATUS_OK);
+					out.putDouble(handle == null ? Double.NaN : handle.getAngleDeg());
+					break;
+				case OP_GET_VAL:
+					out.put(handle == null ? STATUS_UNKNOWN_HANDLE : STATUS_OK);
+					out.putDouble(handle == null ? Double.NaN : handle.getValDouble());
+					break;
+				case OP_SET_ANGLE:
+					if(handle != null)
+						batcher.post(handle, JKnobUpdateBatcher.SET_ANGLE_DEG, value);
+					break;
+				case OP_SET_VAL:
+					if(handle != null)
+						batcher.post(handle, JKnobUpdateBatcher.SET_VAL, value);
+					break;
+				default:
+					throw new IOException("Unknown opcode: " + op);
+				}
+			}
+			in.compact();
+		}
+	}
+}
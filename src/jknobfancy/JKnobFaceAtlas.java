@@ -0,0 +1,267 @@
+package jknobfancy;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.WeakHashMap;
+
+import javax.swing.SwingWorker;
+
+/**
+ * A single image holding pre-rendered rotations of a knob face, laid out in a grid.
+ * Painting a rotated face is then one blit of a sub-image instead of a rotated draw
+ * of the whole background.
+ * <br><br>
+ * Frame 0 is the unrotated face, which shows the knob at its min value position. The
+ * last frame is the face rotated through the knob's whole valid range.
+ * <br><br>
+ * Atlases are shared by all knobs with the same face, size, center, range and
+ * direction, so a skin used by many knobs is only rendered and stored once. The cache
+ * only holds weak references, so an atlas is released when no knob uses it anymore.
+ */
+final class JKnobFaceAtlas {
+
+	/**
+	 * Upper bound on the number of frames
+	 */
+	static final int MAX_FRAMES = 360;
+	/**
+	 * Upper bound on the pixel count of the atlas image (64MB at 4 bytes per pixel)
+	 */
+	static final int MAX_ATLAS_PIXELS = 1 << 24;
+	/**
+	 * Distance in pixels the edge of the face may move between two frames when
+	 * the number of frames is based on the face size
+	 */
+	private static final double EDGE_STEP = 2;
+
+	/**
+	 * Atlases in use for each face image
+	 */
+	private static final Map<Image, List<WeakReference<JKnobFaceAtlas>>> cache =
+			new WeakHashMap<Image, List<WeakReference<JKnobFaceAtlas>>>();
+
+	//~~~~~~~~ Build Parameters ~~~~~~~~//
+	final Image face;
+	final int width;
+	final int height;
+	final int centerX;
+	final int centerY;
+	final double rangeDeg;
+	final boolean cwDirection;
+	final int frames;
+
+	private final int columns;
+	private BufferedImage atlas;
+
+	//~~~~~~~~ Build State, only used on the EDT ~~~~~~~~//
+	private boolean building;
+	private boolean built;
+	/**
+	 * Knobs to repaint once the atlas is built
+	 */
+	private final Set<JKnobFancy> waiting = new LinkedHashSet<JKnobFancy>();
+
+	/**
+	 * Returns the shared atlas for the given parameters, creating an unbuilt one if
+	 * no knob is using a matching atlas
+	 */
+	static JKnobFaceAtlas get(Image face, int width, int height, int centerX, int centerY,
+			double rangeDeg, boolean cwDirection, int frames){
+		synchronized(cache){
+			List<WeakReference<JKnobFaceAtlas>> atlases = cache.get(face);
+			if(atlases == null){
+				atlases = new ArrayList<WeakReference<JKnobFaceAtlas>>();
+				cache.put(face, atlases);
+			}
+			for(Iterator<WeakReference<JKnobFaceAtlas>> it = atlases.iterator(); it.hasNext();){
+				JKnobFaceAtlas atlas = it.next().get();
+				if(atlas == null)
+					it.remove();
+				else if(atlas.matches(face, width, height, centerX, centerY, rangeDeg, cwDirection, frames))
+					return atlas;
+			}
+			JKnobFaceAtlas atlas = new JKnobFaceAtlas(face, width, height, centerX, centerY,
+					rangeDeg, cwDirection, frames);
+			atlases.add(new WeakReference<JKnobFaceAtlas>(atlas));
+			return atlas;
+		}
+	}
+
+	private JKnobFaceAtlas(Image face, int width, int height, int centerX, int centerY,
+			double rangeDeg, boolean cwDirection, int frames){
+		this.face = face;
+		this.width = width;
+		this.height = height;
+		this.centerX = centerX;
+		this.centerY = centerY;
+		this.rangeDeg = rangeDeg;
+		this.cwDirection = cwDirection;
+		this.frames = clampFrames(frames, width, height);
+		this.columns = (int) Math.ceil(Math.sqrt(this.frames));
+	}
+
+	/**
+	 * @param width scaled face width in pixels
+	 * @param height scaled face height in pixels
+	 * @param rangeDeg range the face rotates through in degrees
+	 * @return a frame count at which the edge of the face moves about
+	 * 		two pixels from one frame to the next
+	 */
+	static int framesForSize(int width, int height, double rangeDeg){
+		double radius = Math.max(width, height) / 2.0;
+		return (int) Math.ceil(Math.toRadians(rangeDeg) * radius / EDGE_STEP);
+	}
+
+	/**
+	 * @return whether the atlas was built with the given parameters
+	 */
+	boolean matches(Image face, int width, int height, int centerX, int centerY,
+			double rangeDeg, boolean cwDirection, int frames){
+		return this.face == face && this.width == width && this.height == height
+				&& this.centerX == centerX && this.centerY == centerY
+				&& this.rangeDeg == rangeDeg && this.cwDirection == cwDirection
+				&& this.frames == clampFrames(frames, width, height);
+	}
+
+	/**
+	 * Limits the frame count to {@link #MAX_FRAMES} and to the number of frames
+	 * that fit in {@link #MAX_ATLAS_PIXELS}
+	 */
+	private static int clampFrames(int frames, int width, int height){
+		int fit = MAX_ATLAS_PIXELS / Math.max(1, width * height);
+		return Math.max(2, Math.min(frames, Math.min(MAX_FRAMES, fit)));
+	}
+
+	/**
+	 * @return whether the frames have been rendered and the atlas can be drawn
+	 */
+	boolean isBuilt(){
+		return built;
+	}
+
+	/**
+	 * Renders the atlas on a background thread unless that has already been started,
+	 * and repaints the knob once it is done. If the build fails, e.g. because there is
+	 * not enough memory for the atlas, the atlas stays unbuilt so knobs keep drawing
+	 * the face rotated directly, and the next request tries again. Runs on the EDT.
+	 * @param knob the knob waiting for the atlas
+	 */
+	void requestBuild(JKnobFancy knob){
+		waiting.add(knob);
+		if(building)
+			return;
+		building = true;
+		final GraphicsConfiguration gc = knob.getGraphicsConfiguration();
+		new SwingWorker<Void, Void>(){
+			@Override
+			protected Void doInBackground(){
+				build(gc);
+				return null;
+			}
+
+			@Override
+			protected void done(){
+				try{
+					get();
+				}
+				catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+				catch(ExecutionException e){
+					// Left unbuilt
+				}
+				building = false;
+				built = atlas != null;
+				if(!built){
+					waiting.clear();
+					return;
+				}
+				for(JKnobFancy waitingKnob : waiting){
+					waitingKnob.repaintIfVisible();
+				}
+				waiting.clear();
+			}
+		}.execute();
+	}
+
+	/**
+	 * Renders every frame into the atlas image. May be called off the EDT.
+	 * @param gc configuration used to create an image that is fast to draw, or
+	 * 		null to use a plain ARGB image
+	 */
+	private void build(GraphicsConfiguration gc){
+		int rows = (frames + columns - 1) / columns;
+		BufferedImage image = gc != null
+				? gc.createCompatibleImage(columns * width, rows * height, Transparency.TRANSLUCENT)
+				: new BufferedImage(columns * width, rows * height, BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g2 = image.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+		g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		for(int i = 0; i < frames; i++){
+			Graphics2D frame = (Graphics2D) g2.create((i % columns) * width, (i / columns) * height,
+					width, height);
+			frame.rotate(getRotation(i), centerX, centerY);
+			frame.drawImage(face, 0, 0, width, height, null);
+			frame.dispose();
+		}
+		g2.dispose();
+		atlas = image;
+	}
+
+	/**
+	 * @param frame frame index
+	 * @return rotation of the frame in radians, clockwise on screen
+	 */
+	double getRotation(int frame){
+		return getRotationForPct(isFullCircle() ? (double) frame / frames : (double) frame / (frames - 1));
+	}
+
+	/**
+	 * @param pct position within the knob's valid range (0.0-1.0)
+	 * @return rotation of the face in radians, clockwise on screen
+	 */
+	double getRotationForPct(double pct){
+		double travel = Math.toRadians(pct * rangeDeg);
+		// Screen y points down, so a positive rotation turns the face clockwise
+		return cwDirection ? travel : -travel;
+	}
+
+	/**
+	 * @param pct position within the knob's valid range (0.0-1.0)
+	 * @return the frame closest to the position
+	 */
+	int getFrame(double pct){
+		pct = Math.max(0, Math.min(1, pct));
+		if(isFullCircle())
+			return (int) Math.round(pct * frames) % frames;
+		return (int) Math.round(pct * (frames - 1));
+	}
+
+	private boolean isFullCircle(){
+		return rangeDeg >= 360;
+	}
+
+	/**
+	 * Draws a single frame at the top left corner of the graphics context
+	 */
+	void draw(Graphics g, int frame, ImageObserver observer){
+		int sx = (frame % columns) * width;
+		int sy = (frame / columns) * height;
+		g.drawImage(atlas, 0, 0, width, height, sx, sy, sx + width, sy + height, observer);
+	}
+}
@@ -6,7 +6,7 @@ import javax.swing.*;
 import java.awt.event.*;
 import java.awt.geom.Point2D;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
 * JFancyKnob.java - 
@@ -38,6 +38,16 @@ public class JKnobFancy extends JComponent{
 	private static final long serialVersionUID = -3331634859451614041L;
 
 	private static final double DEG_PER_ROT = 360;
+	/**
+	 * Tolerance in degrees for comparing handle positions with the ends of the
+	 * valid range, which absorbs the rounding of degree/radian conversions
+	 */
+	private static final double RANGE_EPSILON_DEG = 1e-9;
+	/**
+	 * Distance in degrees by which the end of a full circle range that would
+	 * wrap around onto the other end is kept inside the range
+	 */
+	private static final double FULL_CIRCLE_END_DEG = 1e-8;
 	
 	//~~~~~~~~ Knob Value Vars ~~~~~~~~//
 	/**
@@ -61,6 +71,10 @@ public class JKnobFancy extends JComponent{
 	 * from the minValPos, otherwise it will increase as it moves counterclockwise
 	 */
 	boolean cwDirection;
+	/**
+	 * Curve from handle position to value, or null for a linear response
+	 */
+	JKnobTaper taper;
 	
 
 	//~~~~~~~~ Background Image Vars ~~~~~~~~//
@@ -99,9 +113,96 @@ public class JKnobFancy extends JComponent{
 	 */
 	protected ImageIcon defaultHandleIcon;
 	/**
-	 * List containing all handles currently located on the knob object
+	 * List containing all handles currently located on the knob object. Handles
+	 * are rarely added, and the list is read from other threads, e.g. by 
+	 * {@link JKnobControlServer}, so it is copied on write.
+	 */
+	protected List<JKnobHandle> handles = new CopyOnWriteArrayList<JKnobHandle>();
+	
+	//~~~~~~~~ Lazy Realization Vars ~~~~~~~~//
+	/**
+	 * Whether knobs created from now on defer realization
+	 */
+	private static volatile boolean lazyDefault;
+	/**
+	 * If true, geometry, handle preparation and listener installation are
+	 * deferred until the knob is first painted
+	 */
+	private boolean lazy = lazyDefault;
+	/**
+	 * Whether {@link #realize()} has run
+	 */
+	boolean realized;
+	/**
+	 * Center of rotation relative to the background image, as passed to init
+	 */
+	private Point2D relCenter;
+	/**
+	 * Background size requested before realization. Only one of the two
+	 * is used; the other is -1.
+	 */
+	private int requestedWidth = -1, requestedHeight = -1;
+	
+	//~~~~~~~~ Rotating Face Vars ~~~~~~~~//
+	/**
+	 * If true, the background image is rotated with the first handle
+	 */
+	private boolean rotatingFace;
+	/**
+	 * Number of pre-rendered face rotations, or 0 to base it on the face size
+	 */
+	private int faceFrames;
+	/**
+	 * Pre-rendered face rotations used for painting, shared with other knobs
+	 * with the same face. May still be being built.
+	 */
+	private transient JKnobFaceAtlas faceAtlas;
+	
+	//~~~~~~~~ Render Quality Vars ~~~~~~~~//
+	/**
+	 * If true, cheap rendering hints are used while the knob is being 
+	 * interacted with and high quality hints are used when it is idle
+	 */
+	private boolean adaptiveQuality;
+	/**
+	 * Time in milliseconds without handle movement after which the knob
+	 * is repainted at high quality
+	 */
+	private int idleDelay = 250;
+	/**
+	 * Paint duration in nanoseconds above which quality is lowered until
+	 * the knob is idle, or 0 for no budget
 	 */
-	protected List<JKnobHandle> handles = new ArrayList<JKnobHandle>();
+	private long frameBudgetNanos;
+	/**
+	 * Whether a handle is being dragged or has moved within the idle delay
+	 */
+	private transient boolean interacting;
+	/**
+	 * Whether a high quality paint exceeded the frame budget
+	 */
+	private transient boolean overBudget;
+	/**
+	 * Whether the next paint is the high quality repaint after going idle
+	 */
+	private transient boolean settling;
+	private transient Timer idleTimer;
+	
+	//~~~~~~~~ Visibility Vars ~~~~~~~~//
+	/**
+	 * Reused when computing the visible part of the knob
+	 */
+	private Rectangle visibleRect = new Rectangle();
+	
+	//~~~~~~~~ Value Change Vars ~~~~~~~~//
+	/**
+	 * Publisher of handle value changes, created when first requested
+	 */
+	private transient volatile JKnobValuePublisher valuePublisher;
+	/**
+	 * Group of linked knobs this knob belongs to, if any
+	 */
+	transient JKnobGroup group;
 			
 	//~~~~~~~~ Handle Class~~~~~~~~//
 	/**
@@ -122,10 +223,19 @@ public class JKnobFancy extends JComponent{
 		 * Radius of clickable handle area
 		 */
 		int radius;						
+		/**
+		 * Opaque pixels of the icon, used for hit testing. Null if the
+		 * icon image is not available.
+		 */
+		JKnobHitMask hitMask;
+		/**
+		 * Smoothing chain fed with the handle value, created when first requested
+		 */
+		private volatile JKnobValueSmoother smoother;
 		/**
 		 * Handle location in radians
 		 */
-		private double theta;			
+		private volatile double theta;			
 		/**
 		 * Whether the handle is currently clicked
 		 */
@@ -140,7 +250,17 @@ public class JKnobFancy extends JComponent{
 			this.icon = icon;
 			this.pressedOnSpot = false;
 			this.thisKnob = thisKnob;
+			if(thisKnob.realized)
+				prepare();
+		}
+		
+		/**
+		 * Computes the handle size and hit mask from the icon. This is
+		 * deferred until the knob is realized.
+		 */
+		private void prepare(){
 			this.radius = this.icon.getIconWidth() / 2;
+			this.hitMask = JKnobHitMask.forIcon(this.icon);
 		}
 
 		public ImageIcon getIcon() {
@@ -152,6 +272,8 @@ public class JKnobFancy extends JComponent{
 		 */
 		public void setIcon(ImageIcon icon) {
 			this.icon = icon;
+			if(thisKnob.realized)
+				this.hitMask = JKnobHitMask.forIcon(icon);
 		}
 
 		/**
@@ -176,8 +298,10 @@ public class JKnobFancy extends JComponent{
 			// Only set the new angle if it's within the valid positional range
 			double deg = Math.toDegrees(theta);
 			deg = deg < 0 ? deg + DEG_PER_ROT : deg;
-			if(isInValidRange(deg))
+			if(isInValidRange(deg) && this.theta != theta){
 				this.theta = theta;
+				thisKnob.handleChanged(this);
+			}
 		}
 		
 		/**
@@ -216,28 +340,49 @@ public class JKnobFancy extends JComponent{
 			
 			double maxTemp = thisKnob.getMaxPos() - thisKnob.getMinPos();
 			maxTemp = maxTemp < 0 ? maxTemp + DEG_PER_ROT : maxTemp;
-			double handleTemp = newDeg - thisKnob.getMinPos();
-			handleTemp = handleTemp < 0 ? handleTemp + DEG_PER_ROT : handleTemp;
-			
-			System.out.println("New deg: " + newDeg + " max: " + thisKnob.getMaxPos() + " min: " + thisKnob.getMinPos());
-			System.out.println("New deg temp: " + handleTemp + " max temp: " + maxTemp + " min temp: 0" + " CW: " + thisKnob.isCwDirection());
-			System.out.println("");
+			double handleTemp = offsetFromMinPos(newDeg);
 			
-			if((thisKnob.isCwDirection() && handleTemp >= maxTemp) || (!thisKnob.isCwDirection() && handleTemp <= maxTemp))
+			// The min position itself is always valid
+			if(handleTemp == 0)
+				return true;
+			if((thisKnob.isCwDirection() && handleTemp >= maxTemp - RANGE_EPSILON_DEG) 
+					|| (!thisKnob.isCwDirection() && handleTemp <= maxTemp + RANGE_EPSILON_DEG))
 				return true;
 			else
 				return false;			
 		}
 		
+		/**
+		 * @param deg angular position in degrees (0-360)
+		 * @return degrees from the knob's min position to deg, counted CCW 
+		 * 		(0-360). Positions within rounding error of the min position
+		 * 		are reported as 0.
+		 */
+		private double offsetFromMinPos(double deg){
+			double offset = deg - thisKnob.getMinPos();
+			offset = offset < 0 ? offset + DEG_PER_ROT : offset;
+			if(offset < RANGE_EPSILON_DEG || offset > DEG_PER_ROT - RANGE_EPSILON_DEG)
+				return 0;
+			return offset;
+		}
+		
 		 /**
 		  * Determine if the mouse click was on the spot or
 		  * not.  If it was return true, otherwise return 
-		  * false.
+		  * false. Only opaque pixels of the handle icon count
+		  * as being on the spot.
 		  *
 		  * @return true if x,y is on the spot and false if not.
 		  */
 		 private boolean isOnSpot(Point pt) {
-			return (pt.distance(getSpotCenter()) < this.radius);
+			if(hitMask == null)
+				return (pt.distance(getSpotCenter()) < this.radius);
+			
+			// Position relative to the top left corner of the icon as painted
+			Point spotCenter = getSpotCenter();
+			int x = pt.x - (spotCenter.x - icon.getIconWidth() / 2);
+			int y = pt.y - (spotCenter.y - icon.getIconHeight() / 2);
+			return hitMask.contains(x, y);
 		 }
 		
 		 /** 
@@ -286,6 +431,7 @@ public class JKnobFancy extends JComponent{
 		 * @return The radius in pixels of the clickable handle area
 		 */
 		public int getRadius() {
+			thisKnob.realize();
 			return radius;
 		}		
 	
@@ -294,22 +440,105 @@ public class JKnobFancy extends JComponent{
 		 * 		values
 		 */
 		public int getVal(){	
+			return (int) Math.round(getValDouble());
+		}
+		
+		/**
+		 * @return The unrounded handle value scaled based upon the knob's
+		 * 		min and max values and taper
+		 */
+		public double getValDouble(){
+			JKnobTaper taper = thisKnob.taper;
+			double pct = getValPct();
+			return (taper == null ? pct : taper.apply(pct)) * thisKnob.getValRange();
+		}
+		
+		/**
+		 * @return The handle position within the knob's valid range as a 
+		 * 		fraction (0.0-1.0), where 0.0 is the min value position and 
+		 * 		1.0 is the max value position
+		 */
+		public double getValPct(){
 			
 			double maxTemp = thisKnob.getMaxPos() - thisKnob.getMinPos();
 			maxTemp = maxTemp < 0 ? maxTemp + DEG_PER_ROT : maxTemp;
-			double handleTemp = this.getAngleDeg() - thisKnob.getMinPos();
-			handleTemp = handleTemp < 0 ? handleTemp + DEG_PER_ROT : handleTemp;
+			double handleTemp = offsetFromMinPos(this.getAngleDeg());
 			
 			double pct = 0;
 			double range = thisKnob.getValPosRangeDeg();
-			if(thisKnob.isCwDirection())
+			if(thisKnob.isCwDirection()){
+				// The min position is the far end of a CW range
+				handleTemp = handleTemp == 0 && maxTemp != 0 ? DEG_PER_ROT : handleTemp;
 				pct = 1 - ((handleTemp - maxTemp) / range);
+			}
 			else{
 				pct = 1 - ((handleTemp - maxTemp) / range) * -1;
 				pct = thisKnob.getMaxPos() == thisKnob.getMinPos() ? pct - 1 : pct;
 			}
 			
-			return (int) Math.round(pct * thisKnob.getValRange());
+			return pct;
+		}
+		
+		/**
+		 * Returns the smoothing chain for this handle's value. Once created, it is
+		 * fed with the handle's unrounded value whenever the handle moves. See
+		 * {@link JKnobValueSmoother}.
+		 * @return the handle's value smoother
+		 */
+		public synchronized JKnobValueSmoother getSmoother(){
+			if(smoother == null)
+				smoother = new JKnobValueSmoother(getValDouble());
+			return smoother;
+		}
+		
+		/**
+		 * Moves the handle to the position at which it reports the given value.
+		 * This is the inverse of {@link #getValDouble()}.
+		 * @param val the new handle value. Values outside the knob's value
+		 * 		range are clamped.
+		 */
+		public void setVal(double val){
+			int valRange = thisKnob.getValRange();
+			double out = valRange == 0 ? 0 : val / valRange;
+			JKnobTaper taper = thisKnob.taper;
+			setValPct(taper == null ? out : taper.invert(out));
+		}
+		
+		/**
+		 * Moves the handle to a fraction of the knob's valid range. This is 
+		 * the inverse of {@link #getValPct()}.
+		 * @param pct the new position as a fraction (0.0-1.0) of the valid range.
+		 * 		Values outside of 0.0-1.0 are clamped.
+		 */
+		public void setValPct(double pct){
+			pct = Math.max(0, Math.min(1, pct));
+			
+			double maxTemp = thisKnob.getMaxPos() - thisKnob.getMinPos();
+			maxTemp = maxTemp < 0 ? maxTemp + DEG_PER_ROT : maxTemp;
+			double range = thisKnob.getValPosRangeDeg();
+			double handleTemp;
+			if(thisKnob.isCwDirection())
+				handleTemp = maxTemp + (1 - pct) * range;
+			else
+				handleTemp = pct * range;
+			// On a full circle both ends are the same angle, which reads back as
+			// the min end on CCW knobs and the max end on CW knobs. Keep the other
+			// end just inside the range so it reads back as itself.
+			if(maxTemp == 0 && handleTemp >= DEG_PER_ROT)
+				handleTemp = DEG_PER_ROT - FULL_CIRCLE_END_DEG;
+			
+			double deg = (thisKnob.getMinPos() + handleTemp) % DEG_PER_ROT;
+			deg = deg < 0 ? deg + DEG_PER_ROT : deg;
+			// Keep the stored angle in the same -180 to 180 range as atan2
+			double newTheta = Math.toRadians(deg > DEG_PER_ROT / 2 ? deg - DEG_PER_ROT : deg);
+			
+			// The clamped position is in the valid range by construction, so it is
+			// assigned directly instead of being checked again by setAngle, which
+			// could reject the ends of the range because of rounding
+			if(this.theta != newTheta){
+				this.theta = newTheta;
+				thisKnob.handleChanged(this);
+			}
 		}
 	}
 	
@@ -372,13 +601,42 @@ public class JKnobFancy extends JComponent{
 		this.setMaxVal(0);
 		this.defaultHandleIcon = handleIcon;			
 		this.backgroundIcon = backgroundIcon;		
-		this.setWidth(backgroundWidth);		 
+		this.relCenter = relCenter;
+		this.relTrackRadius = relTrackRadius;
+		this.requestedWidth = backgroundWidth;
+		this.requestedHeight = -1;
+		
+		handles.add(new JKnobHandle(Math.toRadians(initDeg), this.defaultHandleIcon, this));
+		
+		if(!lazy)
+			realize();
+	 }
+	 
+	 /**
+	  * Finishes initialization by computing the knob geometry from the 
+	  * background icon, preparing the handles and installing the mouse
+	  * listeners. In lazy mode this is deferred until the knob is
+	  * first painted, so knobs that are never shown never do this work.
+	  * Otherwise it is done by 
+	  * {@link #init(double, Point2D, double, ImageIcon, int, ImageIcon)}.
+	  * Calling it more than once has no effect.
+	  */
+	 public void realize(){
+		if(realized || backgroundIcon == null)
+			return;
+		realized = true;
+		
+		// Called from paint, so the size is applied without asking for another repaint
+		if(requestedHeight >= 0)
+			scaleToHeight(requestedHeight);
+		else
+			scaleToWidth(requestedWidth);
 		this.center = new Point((int)(relCenter.getX() * backgroundIcon.getIconWidth() * scale), 
 				(int)(relCenter.getY() * backgroundIcon.getIconHeight() * scale));		
 		this.setRelTrackRadius(relTrackRadius);
-		
-		
-		handles.add(new JKnobHandle(Math.toRadians(initDeg), this.defaultHandleIcon, this));
+		for(JKnobHandle thisHandle : handles){
+			thisHandle.prepare();
+		}
 		
 		addMouseListener(new MouseAdapter() {
 			 /**
@@ -394,7 +652,9 @@ public class JKnobFancy extends JComponent{
 			
 				Point mouseLoc = e.getPoint();
 				boolean alreadySelected = false;
-				for(JKnobHandle thisHandle : handles){
+				// Handles painted last are on top, so they are checked first
+				for(int i = handles.size() - 1; i >= 0; i--){
+					JKnobHandle thisHandle = handles.get(i);
 					// This prevents multiple spots from being simultaneously selected
 					if(alreadySelected){
 						thisHandle.setPressedOnSpot(false);
@@ -406,6 +666,8 @@ public class JKnobFancy extends JComponent{
 						alreadySelected = true;
 					}
 				}		
+				if(alreadySelected)
+					markInteraction();
 			 }
 			
 			 /**
@@ -420,6 +682,7 @@ public class JKnobFancy extends JComponent{
 				for(JKnobHandle thisHandle : handles){
 					thisHandle.setPressedOnSpot(false);
 				}		
+				endInteraction();
 			 }
 		});
 		addMouseMotionListener(new MouseMotionAdapter() {
@@ -463,11 +726,90 @@ public class JKnobFancy extends JComponent{
 			    // being positive and ccw being negative.
 			    thisHandle.setAngle(Math.atan2(myp, mxp));
 		
+			    markInteraction();
 			    repaint();
 			}
 		}
 	 }
 	 
+	 //~~~~~~~~ Lazy Realization ~~~~~~~~//
+	 /**
+	  * @return the background scale, computed from the requested size if the
+	  * 	knob has not been realized yet
+	  */
+	 private float getScale(){
+		 if(realized)
+			 return scale;
+		 if(requestedHeight >= 0)
+			 return (float) requestedHeight / (float) backgroundIcon.getIconHeight();
+		 return (float) requestedWidth / (float) backgroundIcon.getIconWidth();
+	 }
+	 
+	 /**
+	  * Sets whether knobs created from now on defer their realization. This
+	  * is useful when building screens with many knobs before showing them.
+	  * See {@link #setLazy(boolean)}.
+	  * @param lazyDefault true to make new knobs lazy
+	  */
+	 public static void setLazyDefault(boolean lazyDefault){
+		 JKnobFancy.lazyDefault = lazyDefault;
+	 }
+	 
+	 /**
+	  * @return whether knobs created from now on defer their realization
+	  */
+	 public static boolean isLazyDefault(){
+		 return lazyDefault;
+	 }
+	 
+	 /**
+	  * Sets whether this knob defers geometry, handle preparation and listener
+	  * installation until it is first painted.
+	  * Only has an effect when called before 
+	  * {@link #init(double, Point2D, double, ImageIcon, int, ImageIcon)}, i.e. 
+	  * on a knob created with the no-args constructor.
+	  * @param lazy true to defer realization
+	  */
+	 public void setLazy(boolean lazy){
+		 this.lazy = lazy;
+	 }
+	 
+	 /**
+	  * @return whether this knob defers its realization
+	  */
+	 public boolean isLazy(){
+		 return lazy;
+	 }
+	 
+	 /**
+	  * @return whether the knob has been realized
+	  */
+	 public boolean isRealized(){
+		 return realized;
+	 }
+	 
+	 //~~~~~~~~ Visibility ~~~~~~~~//
+	 /**
+	  * @return whether any part of the knob is currently on screen
+	  */
+	 public boolean isOnScreen(){
+		 if(!isShowing())
+			 return false;
+		 computeVisibleRect(visibleRect);
+		 return !visibleRect.isEmpty();
+	 }
+	 
+	 /**
+	  * Repaints the knob if it is on screen. Otherwise the repaint is skipped,
+	  * so knobs that are hidden or scrolled out of view only have their handle
+	  * positions updated. Swing paints them anyway when they are shown or 
+	  * scrolled into view.
+	  */
+	 protected void repaintIfVisible(){
+		 if(isOnScreen())
+			 repaint();
+	 }
+	 
 	 //~~~~~~~~ Public Methods ~~~~~~~~//
 	 /**
 	  * Sets the knob background image width. The background image is always scaled with
@@ -476,10 +818,19 @@ public class JKnobFancy extends JComponent{
 	  * @param backgroundWidth width in pixels
 	  */
 	 public void setWidth(int backgroundWidth){		
+		if(!realized){
+			requestedWidth = backgroundWidth;
+			requestedHeight = -1;
+			return;
+		}
+		scaleToWidth(backgroundWidth);
+		repaintIfVisible();
+	 }
+	 
+	 private void scaleToWidth(int backgroundWidth){
 		this.scale = (float) backgroundWidth / (float) backgroundIcon.getIconWidth();
 		int height = (int)(backgroundIcon.getIconHeight() * this.scale);
 		this.backgroundSize.setSize(backgroundWidth, height);
-		repaint();
 	 }
 	 
 	 /**
@@ -489,17 +840,31 @@ public class JKnobFancy extends JComponent{
 	  * @param backgroundHeight background image height in pixels
 	  */
 	 public void setHeight(int backgroundHeight){		 
+		 if(!realized){
+			 requestedHeight = backgroundHeight;
+			 requestedWidth = -1;
+			 return;
+		 }
+		 scaleToHeight(backgroundHeight);
+		 repaintIfVisible();
+	 }
+	 
+	 private void scaleToHeight(int backgroundHeight){
 		 this.scale = (float) backgroundHeight / (float) backgroundIcon.getIconHeight();
 		 int width = (int)(backgroundIcon.getIconWidth() * this.scale);
 		 backgroundSize.setSize(width, backgroundHeight);		 
-		 repaint();
 	 }
 	 
 	 /**
 	  * @return Dimension of the current background image size 
 	  */
 	 public Dimension getBackgroundSize(){
-		 return backgroundSize;
+		 if(realized)
+			 return backgroundSize;
+		 float scale = getScale();
+		 if(requestedHeight >= 0)
+			 return new Dimension((int)(backgroundIcon.getIconWidth() * scale), requestedHeight);
+		 return new Dimension(requestedWidth, (int)(backgroundIcon.getIconHeight() * scale));
 	 }
 	 
 	 /**
@@ -508,7 +873,8 @@ public class JKnobFancy extends JComponent{
 	  */
 	 public void setRelTrackRadius(double relTrackRadius){
 		 this.relTrackRadius = relTrackRadius;
-		 this.trackRadius = (int)(this.relTrackRadius * backgroundSize.getWidth());
+		 if(realized)
+			 this.trackRadius = (int)(this.relTrackRadius * backgroundSize.getWidth());
 	 }
 	 
 	 /**
@@ -529,6 +895,43 @@ public class JKnobFancy extends JComponent{
 		 handles.add(new JKnobHandle(Math.toRadians(initDeg), this.defaultHandleIcon, this));
 	 }
 	 
+	 /**
+	  * Returns the publisher of this knob's handle changes. Subscribers receive an item
+	  * whenever the angle or value of a handle changes. See {@link JKnobValuePublisher}.
+	  * @return the knob's value change publisher
+	  */
+	 public synchronized JKnobValuePublisher getValuePublisher(){
+		 if(valuePublisher == null)
+			 valuePublisher = new JKnobValuePublisher(this);
+		 return valuePublisher;
+	 }
+	 
+	 /**
+	  * Notifies the value publisher, the handle's smoother and the knob's 
+	  * group that a handle may have changed
+	  * @param handle the handle that moved
+	  */
+	 void handleChanged(JKnobHandle handle){
+		 JKnobValueSmoother smoother = handle.smoother;
+		 if(smoother != null)
+			 smoother.setTarget(handle.getValDouble());
+		 JKnobValuePublisher publisher = valuePublisher;
+		 if(publisher != null && publisher.hasSubscribers())
+			 publisher.handleChanged(handle);
+		 if(group != null)
+			 group.handleChanged(handle);
+	 }
+	 
+	 /**
+	  * Notifies the value publisher and smoothers that the value of every
+	  * handle may have changed, e.g. because the value range was changed
+	  */
+	 void valueMappingChanged(){
+		 for(JKnobHandle thisHandle : handles){
+			 handleChanged(thisHandle);
+		 }
+	 }
+	 
 	 /**
 	  * Retrieves a handle object currently located on the knob
 	  * @param which the element of the handle list that should be returned
@@ -538,6 +941,37 @@ public class JKnobFancy extends JComponent{
 		 return handles.get(which);
 	 }
 	
+	 /**
+	  * Paint the JKnob on the graphics context given. When adaptive
+	  * quality is enabled, the rendering hints are chosen and the
+	  * paint is timed here. The knob itself is drawn by 
+	  * {@link #paintKnob(Graphics)}.
+	  *
+	  * @param g The graphics context on which to paint the knob.
+	  */
+	 public void paint(Graphics g) {
+		 realize();
+		 if(!adaptiveQuality){
+			 paintKnob(g);
+			 return;
+		 }
+		 
+		 boolean lowQuality = isLowQuality();
+		 applyRenderQuality((Graphics2D) g, lowQuality);
+		 long start = System.nanoTime();
+		 paintKnob(g);
+		 long elapsed = System.nanoTime() - start;
+		 
+		 // The repaint after going idle is allowed to run long, otherwise
+		 // it would keep restarting the idle timer
+		 if(settling)
+			 settling = false;
+		 else if(!lowQuality && frameBudgetNanos > 0 && elapsed > frameBudgetNanos){
+			 overBudget = true;
+			 restartIdleTimer();
+		 }
+	 }
+	 
 	 /**
 	  * Paint the JKnob on the graphics context given.  The knob
 	  * is a filled circle with a small filled circle offset 
@@ -546,10 +980,13 @@ public class JKnobFancy extends JComponent{
 	  *
 	  * @param g The graphics context on which to paint the knob.
 	  */
-	 public void paint(Graphics g) {	
+	 protected void paintKnob(Graphics g) {	
 		 
 		// Draw background
-		g.drawImage(backgroundIcon.getImage(), 0, 0, (int)Math.round(backgroundIcon.getIconWidth()*scale), (int)Math.round(backgroundIcon.getIconHeight()*scale), this);
+		if(rotatingFace)
+			paintRotatingFace(g);
+		else
+			g.drawImage(backgroundIcon.getImage(), 0, 0, (int)Math.round(backgroundIcon.getIconWidth()*scale), (int)Math.round(backgroundIcon.getIconHeight()*scale), this);
 				
 		// Draw handles
 		for(int i = 0; i < handles.size(); i ++){
@@ -565,12 +1002,205 @@ public class JKnobFancy extends JComponent{
 		}		
 	 }
 	
+	 /**
+	  * Sets rendering hints for either speed or quality
+	  * @param g2 The graphics context the knob will be painted on
+	  * @param lowQuality true to favor speed, false to favor quality
+	  */
+	 protected void applyRenderQuality(Graphics2D g2, boolean lowQuality){
+		 if(lowQuality){
+			 g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+			 g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+			 g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+		 }
+		 else{
+			 g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+			 g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			 g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		 }
+	 }
+	 
+	 /**
+	  * @return whether the knob is currently painted with cheap rendering
+	  * 	hints. Always false when adaptive quality is disabled.
+	  */
+	 public boolean isLowQuality(){
+		 return adaptiveQuality && (interacting || overBudget);
+	 }
+	 
+	 /**
+	  * Records handle movement so that the knob is painted at low quality
+	  * until the interaction ends or the idle delay passes
+	  */
+	 private void markInteraction(){
+		 if(!adaptiveQuality)
+			 return;
+		 interacting = true;
+		 restartIdleTimer();
+	 }
+	 
+	 /**
+	  * Returns to high quality painting and repaints the knob once
+	  */
+	 private void endInteraction(){
+		 if(idleTimer != null)
+			 idleTimer.stop();
+		 if(!interacting && !overBudget)
+			 return;
+		 interacting = false;
+		 overBudget = false;
+		 settling = true;
+		 repaintIfVisible();
+	 }
+	 
+	 private void restartIdleTimer(){
+		 if(idleTimer == null){
+			 idleTimer = new Timer(idleDelay, new ActionListener(){
+				 @Override
+				 public void actionPerformed(ActionEvent e){
+					 endInteraction();
+				 }
+			 });
+			 idleTimer.setRepeats(false);
+		 }
+		 idleTimer.restart();
+	 }
+	 
+	 /**
+	  * Sets whether the knob trades rendering quality for speed while a handle
+	  * is being dragged. Once the handle is released or no handle has moved for
+	  * the idle delay, the knob is repainted once at high quality.
+	  * @param adaptiveQuality true to enable adaptive quality
+	  */
+	 public void setAdaptiveQuality(boolean adaptiveQuality){
+		 this.adaptiveQuality = adaptiveQuality;
+		 if(!adaptiveQuality){
+			 if(idleTimer != null)
+				 idleTimer.stop();
+			 interacting = false;
+			 overBudget = false;
+			 settling = false;
+		 }
+		 repaintIfVisible();
+	 }
+	 
+	 /**
+	  * @return whether adaptive quality is enabled
+	  */
+	 public boolean isAdaptiveQuality(){
+		 return adaptiveQuality;
+	 }
+	 
+	 /**
+	  * @param idleDelay time in milliseconds without handle movement after which
+	  * 	the knob is repainted at high quality
+	  */
+	 public void setIdleDelay(int idleDelay){
+		 this.idleDelay = idleDelay;
+		 if(idleTimer != null)
+			 idleTimer.setInitialDelay(idleDelay);
+	 }
+	 
+	 /**
+	  * @return time in milliseconds without handle movement after which the 
+	  * 	knob is repainted at high quality
+	  */
+	 public int getIdleDelay(){
+		 return idleDelay;
+	 }
+	 
+	 /**
+	  * Sets a paint time budget. When adaptive quality is enabled and a high 
+	  * quality paint takes longer than the budget, following paints use low
+	  * quality until the knob has been idle for the idle delay.
+	  * @param frameBudgetNanos budget in nanoseconds, or 0 for no budget
+	  */
+	 public void setFrameBudgetNanos(long frameBudgetNanos){
+		 this.frameBudgetNanos = frameBudgetNanos;
+	 }
+	 
+	 /**
+	  * @return paint time budget in nanoseconds, or 0 if there is none
+	  */
+	 public long getFrameBudgetNanos(){
+		 return frameBudgetNanos;
+	 }
+	 
+	 /**
+	  * Draws the background rotated to the position of the first handle. The
+	  * frame is taken from the shared face atlas for the current parameters if
+	  * it has been built, otherwise the atlas is built in the background and 
+	  * the background is drawn rotated directly until it is ready.
+	  * 
+	  * @param g The graphics context on which to paint the face.
+	  */
+	 private void paintRotatingFace(Graphics g){
+		Image face = backgroundIcon.getImage();
+		int width = Math.round(backgroundIcon.getIconWidth()*scale);
+		int height = Math.round(backgroundIcon.getIconHeight()*scale);
+		double range = getValPosRangeDeg();
+		int frames = faceFrames > 0 ? faceFrames : JKnobFaceAtlas.framesForSize(width, height, range);
+		double pct = handles.isEmpty() ? 0 : handles.get(0).getValPct();
+		
+		if(faceAtlas == null || !faceAtlas.matches(face, width, height, center.x, center.y, range, cwDirection, frames))
+			faceAtlas = JKnobFaceAtlas.get(face, width, height, center.x, center.y, range, cwDirection, frames);
+		if(faceAtlas.isBuilt()){
+			faceAtlas.draw(g, faceAtlas.getFrame(pct), this);
+			return;
+		}
+		
+		faceAtlas.requestBuild(this);
+		Graphics2D g2 = (Graphics2D) g.create();
+		g2.rotate(faceAtlas.getRotationForPct(pct), center.x, center.y);
+		g2.drawImage(face, 0, 0, width, height, this);
+		g2.dispose();
+	 }
+	 
+	 /**
+	  * Sets whether the knob face rotates with the first handle. The face is
+	  * drawn unrotated at the min value position and rotates through the valid
+	  * range in the knob's direction. Rotations are pre-rendered into a single 
+	  * image so each paint only copies one frame.
+	  * @param rotatingFace true to rotate the background image
+	  */
+	 public void setRotatingFace(boolean rotatingFace){
+		 this.rotatingFace = rotatingFace;
+		 if(!rotatingFace)
+			 faceAtlas = null;
+		 repaintIfVisible();
+	 }
+	 
+	 /**
+	  * @return whether the knob face rotates with the first handle
+	  */
+	 public boolean isRotatingFace(){
+		 return rotatingFace;
+	 }
+	 
+	 /**
+	  * @param faceFrames number of pre-rendered face rotations, or 0 to base
+	  * 	the number on the scaled size of the face
+	  */
+	 public void setFaceFrames(int faceFrames){
+		 this.faceFrames = faceFrames;
+		 repaintIfVisible();
+	 }
+	 
+	 /**
+	  * @return number of pre-rendered face rotations, or 0 if it is based on
+	  * 	the scaled size of the face
+	  */
+	 public int getFaceFrames(){
+		 return faceFrames;
+	 }
+	 
 	 /**
 	  * Return the ideal size that the knob would like to be.
 	  *
 	  * @return the preferred size of the JKnob.
 	  */
 	 public Dimension getPreferredSize() {
+		 float scale = getScale();
 		 return new Dimension(Math.round(backgroundIcon.getIconWidth()*scale), Math.round(backgroundIcon.getIconHeight()*scale));
 	 }
 	
@@ -598,6 +1228,7 @@ public class JKnobFancy extends JComponent{
 	 */
 	public void setMinVal(int minVal) {
 		this.minVal = minVal;
+		valueMappingChanged();
 	}
 	/**
 	 * @return maxVal the maximum value a knob handle may have
@@ -612,6 +1243,7 @@ public class JKnobFancy extends JComponent{
 	 */
 	public void setMaxVal(int maxVal) {
 		this.maxVal = maxVal;
+		valueMappingChanged();
 	}	
 	/**
 	 * @return the size of the knob's value range (i.e. maxVal - minVal)
@@ -630,6 +1262,7 @@ public class JKnobFancy extends JComponent{
 	 */
 	public void setMinPos(double minPosDeg){
 		this.minValPos = minPosDeg;
+		valueMappingChanged();
 	}
 	/**
 	 * @return the angular position in degrees at which the knob's maximum value occurs
@@ -642,6 +1275,23 @@ public class JKnobFancy extends JComponent{
 	 */
 	public void setMaxPos(double maxPosDeg){
 		this.maxValPos = maxPosDeg;
+		valueMappingChanged();
+	}
+	/**
+	 * @return the curve from handle position to value, or null if the
+	 * 		knob's response is linear
+	 */
+	public JKnobTaper getTaper(){
+		return taper;
+	}
+	/**
+	 * Sets the curve from handle position to value, e.g. a logarithmic 
+	 * taper for audio levels. See {@link JKnobTaper}.
+	 * @param taper the curve, or null for a linear response
+	 */
+	public void setTaper(JKnobTaper taper){
+		this.taper = taper;
+		valueMappingChanged();
 	}
 	/**
 	 * Gets the range between max and min value positions in degrees. This is dependent upon the
@@ -678,5 +1328,6 @@ public class JKnobFancy extends JComponent{
 	 */
 	public void setCwDirection(boolean cwDirection) {
 		this.cwDirection = cwDirection;
+		valueMappingChanged();
 	}
 }
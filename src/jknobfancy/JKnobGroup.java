@@ -0,0 +1,216 @@
+package jknobfancy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jknobfancy.JKnobFancy.JKnobHandle;
+
+/**
+ * Links knob handles so that moving one moves the others, e.g. for stereo pairs or
+ * master/slave groups. Each link sets its target handle to the source handle's value
+ * multiplied by a ratio plus an offset. Target values are clamped to the target knob's
+ * valid range.
+ * <br><br>
+ * When a linked handle moves, the change is pushed through every handle reachable from
+ * it in one pass, in an order that is computed once per source handle and reused until
+ * the links change. Each handle is updated at most once per change, so links may form
+ * cycles (e.g. two knobs linked to each other) without looping. Every affected knob is
+ * repainted once per change.
+ * <br><br>
+ * A knob can only belong to one group at a time. Groups should only be used on the EDT.
+ */
+public class JKnobGroup {
+
+	/**
+	 * A one way link from one handle to another
+	 */
+	private static class Link{
+		final JKnobHandle source;
+		final JKnobHandle target;
+		final double ratio;
+		final double offset;
+
+		Link(JKnobHandle source, JKnobHandle target, double ratio, double offset){
+			this.source = source;
+			this.target = target;
+			this.ratio = ratio;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * Links leaving each handle
+	 */
+	private final Map<JKnobHandle, List<Link>> links = new HashMap<JKnobHandle, List<Link>>();
+	/**
+	 * Propagation order for each source handle. Cleared whenever the links change.
+	 */
+	private final Map<JKnobHandle, List<Link>> orders = new HashMap<JKnobHandle, List<Link>>();
+	private final Set<JKnobFancy> knobs = new HashSet<JKnobFancy>();
+	private final Set<JKnobFancy> affected = new LinkedHashSet<JKnobFancy>();
+	private boolean propagating;
+
+	/**
+	 * Links two handles one way, so that the target follows the source with
+	 * <code>target value = source value * ratio + offset</code>. Add a second link
+	 * in the other direction to make both handles follow each other.
+	 * @param source knob whose handle drives the link
+	 * @param sourceHandle index of the driving handle
+	 * @param target knob whose handle follows
+	 * @param targetHandle index of the following handle
+	 * @param ratio factor applied to the source value
+	 * @param offset value added after applying the ratio
+	 */
+	public void link(JKnobFancy source, int sourceHandle, JKnobFancy target, int targetHandle,
+			double ratio, double offset){
+		join(source);
+		join(target);
+		JKnobHandle from = source.getHandle(sourceHandle);
+		List<Link> fromLinks = links.get(from);
+		if(fromLinks == null){
+			fromLinks = new ArrayList<Link>();
+			links.put(from, fromLinks);
+		}
+		fromLinks.add(new Link(from, target.getHandle(targetHandle), ratio, offset));
+		orders.clear();
+	}
+
+	/**
+	 * Links two handles one way so that the target has the same value as the source
+	 * @see #link(JKnobFancy, int, JKnobFancy, int, double, double)
+	 */
+	public void link(JKnobFancy source, int sourceHandle, JKnobFancy target, int targetHandle){
+		link(source, sourceHandle, target, targetHandle, 1, 0);
+	}
+
+	/**
+	 * Removes a knob and all links to and from its handles from the group
+	 * @param knob the knob to remove
+	 */
+	public void remove(JKnobFancy knob){
+		if(!knobs.remove(knob))
+			return;
+		links.keySet().removeIf(handle -> handle.thisKnob == knob);
+		for(List<Link> fromLinks : links.values()){
+			fromLinks.removeIf(link -> link.target.thisKnob == knob);
+		}
+		orders.clear();
+		knob.group = null;
+	}
+
+	private void join(JKnobFancy knob){
+		if(knob.group != null && knob.group != this)
+			throw new IllegalStateException("Knob already belongs to another group");
+		knob.group = this;
+		knobs.add(knob);
+	}
+
+	/**
+	 * @return whether following the links from any handle can lead back to it.
+	 * 		Cycles are allowed; each handle is still only updated once per change.
+	 */
+	public boolean hasCycles(){
+		Set<JKnobHandle> done = new HashSet<JKnobHandle>();
+		Set<JKnobHandle> onPath = new HashSet<JKnobHandle>();
+		for(JKnobHandle handle : links.keySet()){
+			if(hasCycle(handle, done, onPath))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean hasCycle(JKnobHandle handle, Set<JKnobHandle> done, Set<JKnobHandle> onPath){
+		if(onPath.contains(handle))
+			return true;
+		if(!done.add(handle))
+			return false;
+		onPath.add(handle);
+		List<Link> fromLinks = links.get(handle);
+		if(fromLinks != null){
+			for(Link link : fromLinks){
+				if(hasCycle(link.target, done, onPath))
+					return true;
+			}
+		}
+		onPath.remove(handle);
+		return false;
+	}
+
+	/**
+	 * Computes the order in which links are followed when a handle moves. Handles are
+	 * visited breadth first and each is reached by exactly one link, so links that lead
+	 * back to a handle that was already visited are left out.
+	 */
+	private List<Link> getOrder(JKnobHandle source){
+		List<Link> order = orders.get(source);
+		if(order != null)
+			return order;
+
+		order = new ArrayList<Link>();
+		Set<JKnobHandle> visited = new HashSet<JKnobHandle>();
+		ArrayDeque<JKnobHandle> queue = new ArrayDeque<JKnobHandle>();
+		visited.add(source);
+		queue.add(source);
+		while(!queue.isEmpty()){
+			List<Link> fromLinks = links.get(queue.poll());
+			if(fromLinks == null)
+				continue;
+			for(Link link : fromLinks){
+				if(visited.add(link.target)){
+					order.add(link);
+					queue.add(link.target);
+				}
+			}
+		}
+		order = order.isEmpty() ? Collections.<Link>emptyList() : order;
+		orders.put(source, order);
+		return order;
+	}
+
+	/**
+	 * Called by the knob when one of its handles moved. Updates all handles linked to
+	 * it and repaints each knob whose handles changed.
+	 */
+	void handleChanged(JKnobHandle source){
+		// Changes made while propagating are part of the current pass
+		if(propagating)
+			return;
+		List<Link> order = getOrder(source);
+		if(order.isEmpty())
+			return;
+
+		propagating = true;
+		try{
+			for(Link link : order){
+				JKnobHandle target = link.target;
+				double oldAngle = target.getAngle();
+				target.setVal(clamp(target, link.source.getValDouble() * link.ratio + link.offset));
+				if(target.getAngle() != oldAngle)
+					affected.add(target.thisKnob);
+			}
+			for(JKnobFancy knob : affected){
+				knob.repaintIfVisible();
+			}
+		}
+		finally{
+			affected.clear();
+			propagating = false;
+		}
+	}
+
+	/**
+	 * Limits a value to the value range of a handle's knob, so that a link pushing the
+	 * handle past either end pins it to that end
+	 */
+	private static double clamp(JKnobHandle handle, double val){
+		int valRange = handle.thisKnob.getValRange();
+		return Math.max(Math.min(0, valRange), Math.min(Math.max(0, valRange), val));
+	}
+}
@@ -0,0 +1,92 @@
+package jknobfancy;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.swing.ImageIcon;
+
+/**
+ * A packed bitmask of the opaque pixels of a handle icon, used to test whether a mouse
+ * press landed on the visible part of a handle. Each pixel is one bit, so a test is a
+ * bounds check followed by a single array lookup.
+ * <br><br>
+ * Masks are cached per image, and icons loaded from the same resource share an image,
+ * so each handle icon is only rasterized once.
+ */
+final class JKnobHitMask {
+
+	/**
+	 * Minimum alpha (0-255) at which a pixel counts as part of the handle
+	 */
+	static final int ALPHA_THRESHOLD = 64;
+
+	private static final Map<Image, JKnobHitMask> cache = new WeakHashMap<Image, JKnobHitMask>();
+
+	private final int width;
+	private final int height;
+	/**
+	 * Number of longs per row
+	 */
+	private final int stride;
+	private final long[] bits;
+
+	private JKnobHitMask(int width, int height, long[] bits){
+		this.width = width;
+		this.height = height;
+		this.stride = (width + 63) >>> 6;
+		this.bits = bits;
+	}
+
+	/**
+	 * @param icon the handle icon
+	 * @return the mask for the icon's image, or null if the image is not available
+	 */
+	static JKnobHitMask forIcon(ImageIcon icon){
+		Image image = icon.getImage();
+		int width = icon.getIconWidth();
+		int height = icon.getIconHeight();
+		if(image == null || width <= 0 || height <= 0)
+			return null;
+		synchronized(cache){
+			JKnobHitMask mask = cache.get(image);
+			if(mask == null || mask.width != width || mask.height != height){
+				mask = build(image, width, height);
+				cache.put(image, mask);
+			}
+			return mask;
+		}
+	}
+
+	private static JKnobHitMask build(Image image, int width, int height){
+		BufferedImage argb = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = argb.createGraphics();
+		g.drawImage(image, 0, 0, width, height, null);
+		g.dispose();
+
+		int[] row = new int[width];
+		int stride = (width + 63) >>> 6;
+		long[] bits = new long[stride * height];
+		for(int y = 0; y < height; y++){
+			argb.getRGB(0, y, width, 1, row, 0, width);
+			for(int x = 0; x < width; x++){
+				if((row[x] >>> 24) >= ALPHA_THRESHOLD)
+					bits[y * stride + (x >>> 6)] |= 1L << (x & 63);
+			}
+		}
+		return new JKnobHitMask(width, height, bits);
+	}
+
+	/**
+	 * @param x x position relative to the top left corner of the icon
+	 * @param y y position relative to the top left corner of the icon
+	 * @return whether the pixel at x, y is opaque
+	 */
+	boolean contains(int x, int y){
+		if(x < 0 || y < 0 || x >= width || y >= height)
+			return false;
+		return (bits[y * stride + (x >>> 6)] & 1L << (x & 63)) != 0;
+	}
+}
@@ -0,0 +1,229 @@
+package jknobfancy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Transmitter;
+
+import jknobfancy.JKnobFancy.JKnobHandle;
+
+/**
+ * A MIDI receiver that moves knob handles in response to control change (CC) and
+ * non-registered parameter number (NRPN) messages. A 7-bit CC value or 14-bit NRPN value
+ * is treated as a position within the knob's valid range, so 0 moves the handle to the
+ * knob's min value position and the largest value moves it to the max value position.
+ * Many controllers only send the data entry MSB for NRPNs, so an MSB on its own has its
+ * bits repeated into the low 7 bits, which lets 127 reach the max value position. A
+ * following LSB replaces the low bits.
+ * <br><br>
+ * Controllers can send hundreds of messages per second per control. Messages are not
+ * applied as they arrive; only the latest position for each handle is kept and all of
+ * them are applied on the event dispatch thread once per frame, with a single repaint
+ * of each affected knob.
+ * <br><br>
+ * The binding can be connected to a device with {@link #connect(Transmitter)}, or
+ * messages can be passed directly to {@link #send(MidiMessage, long)}.
+ */
+public class JKnobMidiBinding implements Receiver {
+
+	private static final int CHANNELS = 16;
+	private static final int CONTROLLERS = 128;
+	private static final int MAX_7_BIT = 0x7F;
+	private static final int MAX_14_BIT = 0x3FFF;
+
+	private static final int CC_DATA_ENTRY_MSB = 6;
+	private static final int CC_DATA_ENTRY_LSB = 38;
+	private static final int CC_NRPN_LSB = 98;
+	private static final int CC_NRPN_MSB = 99;
+	private static final int CC_RPN_LSB = 100;
+	private static final int CC_RPN_MSB = 101;
+
+	private static final int DEFAULT_FRAME_PERIOD = 16;
+
+	/**
+	 * A handle bound to a controller. Several handles may be bound to the same
+	 * controller, in which case they are chained through next.
+	 */
+	private static class Binding{
+		final JKnobHandle handle;
+		Binding next;
+
+		Binding(JKnobHandle handle, Binding next){
+			this.handle = handle;
+			this.next = next;
+		}
+	}
+
+	private final JKnobUpdateBatcher batcher = new JKnobUpdateBatcher(DEFAULT_FRAME_PERIOD);
+	/**
+	 * CC bindings indexed by channel * 128 + controller
+	 */
+	private final Binding[] ccBindings = new Binding[CHANNELS * CONTROLLERS];
+	/**
+	 * NRPN bindings keyed by channel * 16384 + parameter number
+	 */
+	private final Map<Integer, Binding> nrpnBindings = new HashMap<Integer, Binding>();
+
+	// Per channel NRPN state, -1 when not set
+	private final int[] nrpnMsb = new int[CHANNELS];
+	private final int[] nrpnLsb = new int[CHANNELS];
+	private final int[] dataMsb = new int[CHANNELS];
+
+	private Transmitter transmitter;
+
+	public JKnobMidiBinding(){
+		Arrays.fill(nrpnMsb, -1);
+		Arrays.fill(nrpnLsb, -1);
+		Arrays.fill(dataMsb, -1);
+	}
+
+	/**
+	 * Moves a handle when a control change message is received
+	 * @param channel MIDI channel (0-15)
+	 * @param controller controller number (0-127)
+	 * @param knob the knob on which the handle is located
+	 * @param which index of the handle on the knob
+	 */
+	public synchronized void bindCC(int channel, int controller, JKnobFancy knob, int which){
+		checkRange("channel", channel, CHANNELS - 1);
+		checkRange("controller", controller, CONTROLLERS - 1);
+		int index = channel * CONTROLLERS + controller;
+		ccBindings[index] = new Binding(knob.getHandle(which), ccBindings[index]);
+	}
+
+	/**
+	 * Moves a handle when a data entry for a non-registered parameter is received
+	 * @param channel MIDI channel (0-15)
+	 * @param parameter 14-bit parameter number (0-16383)
+	 * @param knob the knob on which the handle is located
+	 * @param which index of the handle on the knob
+	 */
+	public synchronized void bindNRPN(int channel, int parameter, JKnobFancy knob, int which){
+		checkRange("channel", channel, CHANNELS - 1);
+		checkRange("parameter", parameter, MAX_14_BIT);
+		Integer key = channel * (MAX_14_BIT + 1) + parameter;
+		nrpnBindings.put(key, new Binding(knob.getHandle(which), nrpnBindings.get(key)));
+	}
+
+	/**
+	 * Removes all bindings of a knob. Updates that have not been applied yet are dropped.
+	 * @param knob the knob to unbind
+	 */
+	public synchronized void unbind(JKnobFancy knob){
+		for(int i = 0; i < ccBindings.length; i++){
+			ccBindings[i] = unbind(ccBindings[i], knob);
+		}
+		nrpnBindings.replaceAll((key, binding) -> unbind(binding, knob));
+		nrpnBindings.values().removeIf(binding -> binding == null);
+		batcher.remove(knob);
+	}
+
+	private static Binding unbind(Binding first, JKnobFancy knob){
+		while(first != null && first.handle.thisKnob == knob){
+			first = first.next;
+		}
+		for(Binding binding = first; binding != null; binding = binding.next){
+			while(binding.next != null && binding.next.handle.thisKnob == knob){
+				binding.next = binding.next.next;
+			}
+		}
+		return first;
+	}
+
+	private static void checkRange(String name, int value, int max){
+		if(value < 0 || value > max)
+			throw new IllegalArgumentException(name + " out of range: " + value);
+	}
+
+	/**
+	 * @param framePeriod minimum time in milliseconds between two batches of
+	 * 		updates being applied
+	 */
+	public void setFramePeriod(int framePeriod){
+		batcher.setFramePeriod(framePeriod);
+	}
+
+	/**
+	 * Sets this binding as the receiver of a transmitter, e.g. one obtained from
+	 * a MIDI input device. The transmitter is closed along with the binding.
+	 * @param transmitter the transmitter to receive messages from
+	 */
+	public synchronized void connect(Transmitter transmitter){
+		if(this.transmitter != null)
+			this.transmitter.close();
+		this.transmitter = transmitter;
+		transmitter.setReceiver(this);
+	}
+
+	@Override
+	public synchronized void send(MidiMessage message, long timeStamp){
+		if(!(message instanceof ShortMessage))
+			return;
+		ShortMessage shortMessage = (ShortMessage) message;
+		if(shortMessage.getCommand() != ShortMessage.CONTROL_CHANGE)
+			return;
+
+		int channel = shortMessage.getChannel();
+		int controller = shortMessage.getData1();
+		int value = shortMessage.getData2();
+
+		switch(controller){
+		case CC_NRPN_MSB:
+			nrpnMsb[channel] = value;
+			dataMsb[channel] = -1;
+			break;
+		case CC_NRPN_LSB:
+			nrpnLsb[channel] = value;
+			dataMsb[channel] = -1;
+			break;
+		case CC_RPN_MSB:
+		case CC_RPN_LSB:
+			// Data entry now refers to a registered parameter
+			nrpnMsb[channel] = -1;
+			nrpnLsb[channel] = -1;
+			break;
+		case CC_DATA_ENTRY_MSB:
+			dataMsb[channel] = value;
+			postNRPN(channel, value << 7 | value);
+			break;
+		case CC_DATA_ENTRY_LSB:
+			if(dataMsb[channel] >= 0)
+				postNRPN(channel, dataMsb[channel] << 7 | value);
+			break;
+		}
+
+		for(Binding binding = ccBindings[channel * CONTROLLERS + controller]; binding != null;
+				binding = binding.next){
+			batcher.post(binding.handle, JKnobUpdateBatcher.SET_VAL_PCT, (double) value / MAX_7_BIT);
+		}
+	}
+
+	/**
+	 * @param value 14-bit data entry value (0-16383)
+	 */
+	private void postNRPN(int channel, int value){
+		if(nrpnMsb[channel] < 0 || nrpnLsb[channel] < 0 || nrpnBindings.isEmpty())
+			return;
+		int parameter = nrpnMsb[channel] << 7 | nrpnLsb[channel];
+		Binding binding = nrpnBindings.get(channel * (MAX_14_BIT + 1) + parameter);
+		for(; binding != null; binding = binding.next){
+			batcher.post(binding.handle, JKnobUpdateBatcher.SET_VAL_PCT, (double) value / MAX_14_BIT);
+		}
+	}
+
+	/**
+	 * Disconnects from the transmitter, if any. Bindings are kept, so messages passed to
+	 * {@link #send(MidiMessage, long)} are still applied.
+	 */
+	@Override
+	public synchronized void close(){
+		if(transmitter != null){
+			transmitter.close();
+			transmitter = null;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package jknobfancy;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A curve mapping a handle's position within the knob's valid range to a fraction of
+ * the knob's value range, e.g. to give a knob an audio style logarithmic response. Both
+ * position and output run from 0.0 to 1.0.
+ * <br><br>
+ * A taper is compiled into a lookup table when it is created, along with a table for
+ * the inverse curve, so evaluating it in either direction is an index calculation plus
+ * one multiply-add. The inverse assumes the curve never decreases; flat sections such as
+ * detents invert to the start of the section.
+ */
+public final class JKnobTaper {
+
+	/**
+	 * Number of table intervals used when none is given
+	 */
+	public static final int DEFAULT_RESOLUTION = 1024;
+
+	private final DoubleUnaryOperator curve;
+	private final int resolution;
+	private final double[] values;
+	private final double[] slopes;
+	private final double[] inverseValues;
+	private final double[] inverseSlopes;
+
+	private JKnobTaper(DoubleUnaryOperator curve, int resolution){
+		if(resolution < 1)
+			throw new IllegalArgumentException("Resolution must be at least 1: " + resolution);
+		this.curve = curve;
+		this.resolution = resolution;
+
+		values = new double[resolution + 1];
+		for(int i = 0; i <= resolution; i++){
+			values[i] = Math.max(0, Math.min(1, curve.applyAsDouble((double) i / resolution)));
+		}
+		slopes = slopes(values);
+
+		// Sample the inverse by searching the forward table
+		inverseValues = new double[resolution + 1];
+		for(int i = 0; i <= resolution; i++){
+			inverseValues[i] = invertSample((double) i / resolution);
+		}
+		inverseSlopes = slopes(inverseValues);
+	}
+
+	private static double[] slopes(double[] table){
+		double[] ret = new double[table.length];
+		for(int i = 0; i < table.length - 1; i++){
+			ret[i] = table[i + 1] - table[i];
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the position at which the forward table first reaches the output
+	 */
+	private double invertSample(double out){
+		if(out <= values[0])
+			return 0;
+		if(out >= values[resolution])
+			return 1;
+		// First index whose value is >= out
+		int lo = 0;
+		int hi = resolution;
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(values[mid] < out)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		if(lo == 0)
+			return 0;
+		double span = values[lo] - values[lo - 1];
+		double frac = span == 0 ? 0 : (out - values[lo - 1]) / span;
+		return (lo - 1 + frac) / resolution;
+	}
+
+	private static double lookup(double[] table, double[] slopes, int resolution, double x){
+		if(x <= 0)
+			return table[0];
+		if(x >= 1)
+			return table[resolution];
+		double f = x * resolution;
+		int i = (int) f;
+		return table[i] + (f - i) * slopes[i];
+	}
+
+	/**
+	 * @param pct position within the knob's valid range (0.0-1.0)
+	 * @return fraction of the knob's value range (0.0-1.0)
+	 */
+	public double apply(double pct){
+		return lookup(values, slopes, resolution, pct);
+	}
+
+	/**
+	 * @param out fraction of the knob's value range (0.0-1.0)
+	 * @return position within the knob's valid range (0.0-1.0)
+	 */
+	public double invert(double out){
+		return lookup(inverseValues, inverseSlopes, resolution, out);
+	}
+
+	/**
+	 * @return number of table intervals
+	 */
+	public int getResolution(){
+		return resolution;
+	}
+
+	//~~~~~~~~ Factories ~~~~~~~~//
+	/**
+	 * @param curve function from position (0.0-1.0) to output (0.0-1.0). Outputs are
+	 * 		clamped to 0.0-1.0.
+	 * @param resolution number of table intervals
+	 * @return the compiled taper
+	 */
+	public static JKnobTaper of(DoubleUnaryOperator curve, int resolution){
+		return new JKnobTaper(curve, resolution);
+	}
+
+	/**
+	 * @param curve function from position (0.0-1.0) to output (0.0-1.0)
+	 * @return the compiled taper at the default resolution
+	 */
+	public static JKnobTaper of(DoubleUnaryOperator curve){
+		return new JKnobTaper(curve, DEFAULT_RESOLUTION);
+	}
+
+	/**
+	 * @return a taper whose output equals the position
+	 */
+	public static JKnobTaper linear(){
+		return of(DoubleUnaryOperator.identity(), 1);
+	}
+
+	/**
+	 * Audio style "log" taper, which changes slowly near the minimum and quickly near
+	 * the maximum: <code>(base^x - 1) / (base - 1)</code>
+	 * @param base steepness of the curve, greater than 1. 10 gives about 25% output at
+	 * 		the middle position, 100 about 9%.
+	 * @return the compiled taper
+	 */
+	public static JKnobTaper exponential(final double base){
+		if(base <= 1)
+			throw new IllegalArgumentException("Base must be greater than 1: " + base);
+		return of(x -> (Math.pow(base, x) - 1) / (base - 1));
+	}
+
+	/**
+	 * Inverse of {@link #exponential(double)}, which changes quickly near the minimum
+	 * and slowly near the maximum: <code>log(1 + (base - 1) x) / log(base)</code>
+	 * @param base steepness of the curve, greater than 1
+	 * @return the compiled taper
+	 */
+	public static JKnobTaper logarithmic(final double base){
+		if(base <= 1)
+			throw new IllegalArgumentException("Base must be greater than 1: " + base);
+		return of(x -> Math.log(1 + (base - 1) * x) / Math.log(base));
+	}
+
+	/**
+	 * A curve drawn straight between breakpoints. Positions before the first breakpoint
+	 * or after the last take the output of the nearest breakpoint.
+	 * @param positions breakpoint positions (0.0-1.0) in increasing order
+	 * @param outputs output at each breakpoint (0.0-1.0)
+	 * @return the compiled taper
+	 */
+	public static JKnobTaper breakpoints(double[] positions, double[] outputs){
+		final double[] xs = positions.clone();
+		final double[] ys = outputs.clone();
+		if(xs.length == 0 || xs.length != ys.length)
+			throw new IllegalArgumentException("Need the same, non-zero number of positions and outputs");
+		for(int i = 1; i < xs.length; i++){
+			if(xs[i] <= xs[i - 1])
+				throw new IllegalArgumentException("Breakpoint positions must increase");
+		}
+		return of(x -> interpolate(xs, ys, x));
+	}
+
+	private static double interpolate(double[] xs, double[] ys, double x){
+		int i = Arrays.binarySearch(xs, x);
+		if(i >= 0)
+			return ys[i];
+		i = -i - 1;
+		if(i == 0)
+			return ys[0];
+		if(i == xs.length)
+			return ys[xs.length - 1];
+		double frac = (x - xs[i - 1]) / (xs[i] - xs[i - 1]);
+		return ys[i - 1] + frac * (ys[i] - ys[i - 1]);
+	}
+
+	/**
+	 * Returns a copy of this taper with detents, i.e. flat sections around the given
+	 * positions in which the output stays at the detent's output. The rest of the curve
+	 * is squeezed between the detents so the output stays continuous.
+	 * @param detents detent positions (0.0-1.0) in increasing order
+	 * @param width width of each detent as a fraction of the valid range
+	 * @return the compiled taper
+	 */
+	public JKnobTaper withDetents(double[] detents, double width){
+		double half = width / 2;
+		// Map from handle position to position on the original curve
+		double[] xs = new double[detents.length * 2 + 2];
+		double[] ys = new double[xs.length];
+		int n = 0;
+		xs[n] = 0;
+		ys[n++] = 0;
+		for(double detent : detents){
+			double start = Math.max(detent - half, xs[n - 1]);
+			double end = Math.min(detent + half, 1);
+			if(start > xs[n - 1]){
+				xs[n] = start;
+				ys[n++] = detent;
+			}
+			else
+				ys[n - 1] = detent;
+			if(end > xs[n - 1]){
+				xs[n] = end;
+				ys[n++] = detent;
+			}
+		}
+		if(xs[n - 1] < 1){
+			xs[n] = 1;
+			ys[n++] = 1;
+		}
+		final double[] mapX = Arrays.copyOf(xs, n);
+		final double[] mapY = Arrays.copyOf(ys, n);
+		final DoubleUnaryOperator original = curve;
+		// Detent edges need more intervals than a straight line does
+		return of(x -> original.applyAsDouble(interpolate(mapX, mapY, x)),
+				Math.max(resolution, DEFAULT_RESOLUTION));
+	}
+}
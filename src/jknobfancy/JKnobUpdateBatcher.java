@@ -0,0 +1,155 @@
+package jknobfancy;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.Timer;
+
+import jknobfancy.JKnobFancy.JKnobHandle;
+
+/**
+ * Collects handle updates posted from any thread and applies them on the event
+ * dispatch thread once per frame. Only the most recent update for each handle is
+ * kept, and each affected knob is repainted once per frame no matter how many of
+ * its handles changed.
+ */
+final class JKnobUpdateBatcher {
+
+	static final int SET_ANGLE_DEG = 0;
+	static final int SET_VAL = 1;
+	static final int SET_VAL_PCT = 2;
+
+	/**
+	 * Most recent update posted for a handle
+	 */
+	private static class Slot{
+		final JKnobHandle handle;
+		int kind;
+		double value;
+		boolean pending;
+
+		Slot(JKnobHandle handle){
+			this.handle = handle;
+		}
+	}
+
+	private final Map<JKnobHandle, Slot> slots = new HashMap<JKnobHandle, Slot>();
+	private final List<Slot> dirty = new ArrayList<Slot>();
+	private final Timer timer;
+	private boolean flushScheduled;
+
+	// Copies of the dirty slots taken at the start of a flush. Only used on the EDT.
+	private JKnobHandle[] flushHandles = new JKnobHandle[16];
+	private int[] flushKinds = new int[16];
+	private double[] flushValues = new double[16];
+	private final Set<JKnobFancy> flushKnobs = new LinkedHashSet<JKnobFancy>();
+
+	/**
+	 * @param framePeriod minimum time in milliseconds between two flushes
+	 */
+	JKnobUpdateBatcher(int framePeriod){
+		timer = new Timer(framePeriod, new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e){
+				flush();
+			}
+		});
+		timer.setRepeats(false);
+	}
+
+	/**
+	 * @param framePeriod minimum time in milliseconds between two flushes
+	 */
+	void setFramePeriod(int framePeriod){
+		timer.setInitialDelay(framePeriod);
+	}
+
+	/**
+	 * Queues an update for a handle, replacing any update for the same handle
+	 * that has not been applied yet. May be called from any thread.
+	 * @param handle the handle to update
+	 * @param kind one of {@link #SET_ANGLE_DEG}, {@link #SET_VAL} or {@link #SET_VAL_PCT}
+	 * @param value the new angle, value or fraction of the value range
+	 */
+	void post(JKnobHandle handle, int kind, double value){
+		boolean schedule = false;
+		synchronized(this){
+			Slot slot = slots.get(handle);
+			if(slot == null){
+				slot = new Slot(handle);
+				slots.put(handle, slot);
+			}
+			slot.kind = kind;
+			slot.value = value;
+			if(!slot.pending){
+				slot.pending = true;
+				dirty.add(slot);
+			}
+			if(!flushScheduled){
+				flushScheduled = true;
+				schedule = true;
+			}
+		}
+		if(schedule)
+			timer.restart();
+	}
+
+	/**
+	 * Forgets all queued and past updates for the handles of a knob
+	 */
+	synchronized void remove(JKnobFancy knob){
+		slots.values().removeIf(slot -> slot.handle.thisKnob == knob);
+		dirty.removeIf(slot -> slot.handle.thisKnob == knob);
+	}
+
+	/**
+	 * Applies all queued updates and repaints the affected knobs. Runs on the EDT.
+	 */
+	private void flush(){
+		int count;
+		synchronized(this){
+			count = dirty.size();
+			if(flushHandles.length < count){
+				flushHandles = new JKnobHandle[count * 2];
+				flushKinds = new int[count * 2];
+				flushValues = new double[count * 2];
+			}
+			for(int i = 0; i < count; i++){
+				Slot slot = dirty.get(i);
+				flushHandles[i] = slot.handle;
+				flushKinds[i] = slot.kind;
+				flushValues[i] = slot.value;
+				slot.pending = false;
+			}
+			dirty.clear();
+			flushScheduled = false;
+		}
+
+		for(int i = 0; i < count; i++){
+			JKnobHandle handle = flushHandles[i];
+			switch(flushKinds[i]){
+			case SET_ANGLE_DEG:
+				handle.setAngleDeg(flushValues[i]);
+				break;
+			case SET_VAL:
+				handle.setVal(flushValues[i]);
+				break;
+			case SET_VAL_PCT:
+				handle.setValPct(flushValues[i]);
+				break;
+			}
+			flushKnobs.add(handle.thisKnob);
+			flushHandles[i] = null;
+		}
+		for(JKnobFancy knob : flushKnobs){
+			knob.repaintIfVisible();
+		}
+		flushKnobs.clear();
+	}
+}
@@ -0,0 +1,53 @@
+package jknobfancy;
+
+/**
+ * Describes the state of a knob handle after its angle or value changed. Instances are
+ * published by the knob's {@link JKnobValuePublisher}.
+ */
+public final class JKnobValueChange {
+
+	private final JKnobFancy knob;
+	private final int handleIndex;
+	private final double angleDeg;
+	private final int val;
+
+	JKnobValueChange(JKnobFancy knob, int handleIndex, double angleDeg, int val){
+		this.knob = knob;
+		this.handleIndex = handleIndex;
+		this.angleDeg = angleDeg;
+		this.val = val;
+	}
+
+	/**
+	 * @return the knob on which the handle is located
+	 */
+	public JKnobFancy getKnob(){
+		return knob;
+	}
+
+	/**
+	 * @return the index of the handle, as used by {@link JKnobFancy#getHandle(int)}
+	 */
+	public int getHandleIndex(){
+		return handleIndex;
+	}
+
+	/**
+	 * @return the handle position in degrees (0-360)
+	 */
+	public double getAngleDeg(){
+		return angleDeg;
+	}
+
+	/**
+	 * @return the handle value scaled based upon the knob's min and max values
+	 */
+	public int getVal(){
+		return val;
+	}
+
+	@Override
+	public String toString(){
+		return "JKnobValueChange[handle=" + handleIndex + ", angleDeg=" + angleDeg + ", val=" + val + "]";
+	}
+}
@@ -0,0 +1,235 @@
+package jknobfancy;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jknobfancy.JKnobFancy.JKnobHandle;
+
+/**
+ * Publishes changes of the handles on a single knob. An item is only published when the
+ * angle or the value of a handle actually changes, so dragging a handle across pixels that
+ * map to the same position does not produce any events.
+ * <br><br>
+ * Each subscriber is run on an executor, which defaults to the common fork/join pool. Any
+ * executor may be given, including one that runs tasks on virtual threads or on the event
+ * dispatch thread. When a subscriber falls behind, pending items are merged per handle so
+ * that at most one item per handle is ever waiting to be delivered; the subscriber always
+ * receives the most recent state of a handle.
+ */
+public class JKnobValuePublisher implements Publisher<JKnobValueChange> {
+
+	private final JKnobFancy knob;
+	private volatile Executor executor;
+	private final List<ValueSubscription> subscriptions = new CopyOnWriteArrayList<ValueSubscription>();
+	/**
+	 * The last state published for each handle
+	 */
+	private final Map<JKnobHandle, JKnobValueChange> lastPublished = new HashMap<JKnobHandle, JKnobValueChange>();
+
+	JKnobValuePublisher(JKnobFancy knob){
+		this.knob = knob;
+		this.executor = ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * @param executor the executor used to run subscribers that are subscribed
+	 * 		without specifying one
+	 */
+	public void setExecutor(Executor executor){
+		this.executor = Objects.requireNonNull(executor);
+	}
+
+	/**
+	 * @return the executor used to run subscribers that are subscribed without
+	 * 		specifying one
+	 */
+	public Executor getExecutor(){
+		return executor;
+	}
+
+	/**
+	 * Subscribes using the publisher's executor. See {@link #setExecutor(Executor)}.
+	 */
+	@Override
+	public void subscribe(Subscriber<? super JKnobValueChange> subscriber){
+		subscribe(subscriber, executor);
+	}
+
+	/**
+	 * @param subscriber the subscriber to add
+	 * @param executor the executor on which the subscriber's methods will be called
+	 */
+	public void subscribe(Subscriber<? super JKnobValueChange> subscriber, Executor executor){
+		Objects.requireNonNull(subscriber);
+		Objects.requireNonNull(executor);
+		ValueSubscription subscription = new ValueSubscription(subscriber, executor);
+		subscriptions.add(subscription);
+		subscription.schedule();
+	}
+
+	/**
+	 * @return whether any subscribers are currently subscribed
+	 */
+	public boolean hasSubscribers(){
+		return !subscriptions.isEmpty();
+	}
+
+	/**
+	 * Called by the knob whenever a handle may have moved or the knob's value mapping
+	 * may have changed. Publishes the handle state if it differs from the last state
+	 * published for that handle.
+	 */
+	synchronized void handleChanged(JKnobHandle handle){
+		double angleDeg = handle.getAngleDeg();
+		int val = handle.getVal();
+		JKnobValueChange last = lastPublished.get(handle);
+		if(last != null && last.getAngleDeg() == angleDeg && last.getVal() == val)
+			return;
+
+		JKnobValueChange change = new JKnobValueChange(knob, knob.handles.indexOf(handle), angleDeg, val);
+		lastPublished.put(handle, change);
+		for(ValueSubscription subscription : subscriptions){
+			subscription.offer(change);
+		}
+	}
+
+	//~~~~~~~~ Subscription Class ~~~~~~~~//
+	/**
+	 * Subscription holding at most one pending item per handle. Delivery is done by a
+	 * drain task on the subscriber's executor, and only one drain task is ever scheduled
+	 * at a time, so the subscriber is never called concurrently.
+	 */
+	private final class ValueSubscription implements Subscription, Runnable{
+
+		private final Subscriber<? super JKnobValueChange> subscriber;
+		private final Executor executor;
+		/**
+		 * Pending items keyed by handle index
+		 */
+		private final LinkedHashMap<Integer, JKnobValueChange> pending = new LinkedHashMap<Integer, JKnobValueChange>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private long demand;
+		private boolean cancelled;
+		private Throwable error;
+		/**
+		 * Only accessed from the drain task
+		 */
+		private boolean subscribed;
+
+		private ValueSubscription(Subscriber<? super JKnobValueChange> subscriber, Executor executor){
+			this.subscriber = subscriber;
+			this.executor = executor;
+		}
+
+		private void offer(JKnobValueChange change){
+			synchronized(this){
+				if(cancelled)
+					return;
+				pending.put(change.getHandleIndex(), change);
+				if(demand == 0)
+					return;
+			}
+			schedule();
+		}
+
+		@Override
+		public void request(long n){
+			synchronized(this){
+				if(cancelled)
+					return;
+				if(n <= 0)
+					error = new IllegalArgumentException("Non-positive request: " + n);
+				else
+					demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel(){
+			synchronized(this){
+				cancelled = true;
+				pending.clear();
+			}
+			subscriptions.remove(this);
+		}
+
+		private void schedule(){
+			if(scheduled.compareAndSet(false, true)){
+				try{
+					executor.execute(this);
+				}
+				catch(RejectedExecutionException e){
+					scheduled.set(false);
+					cancel();
+				}
+			}
+		}
+
+		private synchronized boolean hasWork(){
+			return !cancelled && (error != null || (demand > 0 && !pending.isEmpty()));
+		}
+
+		@Override
+		public void run(){
+			try{
+				if(!subscribed){
+					subscribed = true;
+					subscriber.onSubscribe(this);
+				}
+				drain();
+			}
+			catch(Throwable t){
+				cancel();
+			}
+			finally{
+				scheduled.set(false);
+			}
+			// Items may have arrived after the drain loop finished
+			if(hasWork())
+				schedule();
+		}
+
+		private void drain(){
+			for(;;){
+				JKnobValueChange next = null;
+				Throwable thisError = null;
+				synchronized(this){
+					if(cancelled)
+						return;
+					if(error != null){
+						thisError = error;
+						cancelled = true;
+						pending.clear();
+					}
+					else if(demand > 0 && !pending.isEmpty()){
+						Iterator<JKnobValueChange> it = pending.values().iterator();
+						next = it.next();
+						it.remove();
+						demand--;
+					}
+				}
+				if(thisError != null){
+					subscriptions.remove(this);
+					subscriber.onError(thisError);
+					return;
+				}
+				if(next == null)
+					return;
+				subscriber.onNext(next);
+			}
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package jknobfancy;
+
+/**
+ * Smooths the value of a knob handle for consumers such as real-time control loops. The
+ * handle's unrounded value is fed in as the target whenever the handle moves, and each
+ * call to {@link #process(double)} advances the smoothed value through these stages:
+ * <ol>
+ * <li>Deadband - the target is ignored until it moves further than the deadband from
+ * 		the last accepted target, which hides mouse jitter.</li>
+ * <li>Low-pass - a one-pole filter with the given time constant.</li>
+ * <li>Slew-rate limit - the value changes by no more than the given rate.</li>
+ * <li>Quantization - the output is rounded to a multiple of the given step.</li>
+ * </ol>
+ * A stage is disabled when its parameter is 0, which is the default for all of them.
+ * <br><br>
+ * All state is kept in primitive fields and no objects are allocated per sample.
+ * {@link #process(double)} must only be called from one thread at a time, usually the
+ * control loop that consumes the value. {@link #getSmoothedVal()} and the setters may be
+ * called from any thread.
+ */
+public class JKnobValueSmoother {
+
+	//~~~~~~~~ Configuration ~~~~~~~~//
+	private volatile double deadband;
+	private volatile double lowPassTime;
+	private volatile double slewRate;
+	private volatile double quantum;
+
+	//~~~~~~~~ Shared Values ~~~~~~~~//
+	private volatile double target;
+	private volatile double smoothed;
+	/**
+	 * Set when the filter state should jump straight to the target
+	 */
+	private volatile boolean resetPending = true;
+
+	//~~~~~~~~ Filter State (process thread only) ~~~~~~~~//
+	private double accepted;
+	private double lowPassed;
+	private double slewed;
+	private double lastDt = -1;
+	private double lastTau = -1;
+	private double lastAlpha;
+
+	/**
+	 * @param initVal the initial target and smoothed value
+	 */
+	public JKnobValueSmoother(double initVal){
+		this.target = initVal;
+		this.smoothed = initVal;
+	}
+
+	/**
+	 * @param target the raw value the smoothed value moves towards
+	 */
+	public void setTarget(double target){
+		this.target = target;
+	}
+
+	/**
+	 * @return the raw value the smoothed value moves towards
+	 */
+	public double getTarget(){
+		return target;
+	}
+
+	/**
+	 * Jumps straight to the current target on the next call to {@link #process(double)},
+	 * skipping all filtering
+	 */
+	public void reset(){
+		resetPending = true;
+	}
+
+	/**
+	 * Advances the filter chain by one sample
+	 * @param dt time since the previous sample in seconds
+	 * @return the new smoothed value
+	 */
+	public double process(double dt){
+		double in = target;
+		if(resetPending){
+			resetPending = false;
+			accepted = in;
+			lowPassed = in;
+			slewed = in;
+		}
+
+		// Deadband
+		double band = deadband;
+		if(band <= 0 || Math.abs(in - accepted) >= band)
+			accepted = in;
+
+		// Low-pass
+		double tau = lowPassTime;
+		if(tau > 0){
+			// Only recompute the coefficient when the sample period or time constant changes
+			if(dt != lastDt || tau != lastTau){
+				lastDt = dt;
+				lastTau = tau;
+				lastAlpha = 1 - Math.exp(-dt / tau);
+			}
+			lowPassed += lastAlpha * (accepted - lowPassed);
+		}
+		else
+			lowPassed = accepted;
+
+		// Slew-rate limit
+		double rate = slewRate;
+		if(rate > 0){
+			double maxStep = rate * dt;
+			double step = lowPassed - slewed;
+			slewed += step > maxStep ? maxStep : step < -maxStep ? -maxStep : step;
+		}
+		else
+			slewed = lowPassed;
+
+		// Quantization
+		double q = quantum;
+		double out = q > 0 ? Math.round(slewed / q) * q : slewed;
+		smoothed = out;
+		return out;
+	}
+
+	/**
+	 * @return the smoothed value as of the last call to {@link #process(double)}
+	 */
+	public double getSmoothedVal(){
+		return smoothed;
+	}
+
+	/**
+	 * @param deadband minimum change of the target, in value units, that is passed
+	 * 		on to the rest of the chain. 0 disables the deadband.
+	 */
+	public void setDeadband(double deadband){
+		this.deadband = deadband;
+	}
+
+	public double getDeadband(){
+		return deadband;
+	}
+
+	/**
+	 * @param lowPassTime time constant of the low-pass filter in seconds. 0 disables
+	 * 		the filter.
+	 */
+	public void setLowPassTime(double lowPassTime){
+		this.lowPassTime = lowPassTime;
+	}
+
+	public double getLowPassTime(){
+		return lowPassTime;
+	}
+
+	/**
+	 * @param slewRate maximum change of the value in value units per second. 0 disables
+	 * 		the limit.
+	 */
+	public void setSlewRate(double slewRate){
+		this.slewRate = slewRate;
+	}
+
+	public double getSlewRate(){
+		return slewRate;
+	}
+
+	/**
+	 * @param quantum step to which the output is rounded. 0 disables quantization.
+	 */
+	public void setQuantum(double quantum){
+		this.quantum = quantum;
+	}
+
+	public double getQuantum(){
+		return quantum;
+	}
+}
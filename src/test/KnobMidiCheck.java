@@ -0,0 +1,127 @@
+package test;
+
+import java.awt.geom.Point2D;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+import javax.swing.SwingUtilities;
+
+import jknobfancy.JKnobFancy;
+import jknobfancy.JKnobHandleIcons;
+import jknobfancy.JKnobMidiBinding;
+
+/**
+ * Sends CC and NRPN messages to a {@link JKnobMidiBinding} used as a software
+ * receiver and checks where the bound handles end up. Prints each failure and
+ * exits with status 1 if there were any.
+ */
+public class KnobMidiCheck {
+
+	private static final double TOLERANCE = 1e-9;
+	private static final int CHANNEL = 3;
+	private static final int CONTROLLER = 7;
+	private static final int PARAMETER = 300;
+
+	private static final int MAX_14_BIT = 0x3FFF;
+
+	private static int failures;
+	private static int checks;
+
+	private static JKnobMidiBinding binding;
+	private static JKnobFancy ccKnob;
+	private static JKnobFancy nrpnKnob;
+
+	public static void main(String[] args) throws Exception {
+		ccKnob = newKnob();
+		nrpnKnob = newKnob();
+		binding = new JKnobMidiBinding();
+		binding.setFramePeriod(1);
+		binding.bindCC(CHANNEL, CONTROLLER, ccKnob, 0);
+		binding.bindNRPN(CHANNEL, PARAMETER, nrpnKnob, 0);
+
+		// 7-bit CC
+		for(int value : new int[]{0, 1, 64, 126, 127}){
+			send(CONTROLLER, value);
+			check(ccKnob, "CC " + value, value / 127.0);
+		}
+		// A CC on another channel is ignored
+		sendOn(CHANNEL + 1, CONTROLLER, 0);
+		check(ccKnob, "CC on unbound channel", 1);
+
+		// NRPN with data entry MSB only, and with an LSB following it
+		selectNRPN(PARAMETER);
+		for(int msb = 0; msb <= 127; msb++){
+			send(6, msb);
+			double msbOnly = (double) (msb << 7 | msb) / MAX_14_BIT;
+			check(nrpnKnob, "NRPN MSB " + msb, msbOnly);
+			for(int lsb : new int[]{0, 127}){
+				send(6, msb);
+				send(38, lsb);
+				check(nrpnKnob, "NRPN MSB " + msb + " LSB " + lsb, (double) (msb << 7 | lsb) / MAX_14_BIT);
+			}
+		}
+
+		// Data entry for another parameter is ignored
+		selectNRPN(PARAMETER + 1);
+		send(6, 0);
+		check(nrpnKnob, "NRPN for unbound parameter", 1);
+
+		// Selecting an RPN stops data entry from reaching the NRPN
+		selectNRPN(PARAMETER);
+		send(101, 0);
+		send(100, 0);
+		send(6, 0);
+		check(nrpnKnob, "data entry after RPN select", 1);
+
+		binding.close();
+		System.out.println(failures + " of " + checks + " MIDI checks failed");
+		System.exit(failures > 0 ? 1 : 0);
+	}
+
+	private static void selectNRPN(int parameter) throws InvalidMidiDataException {
+		send(99, parameter >> 7);
+		send(98, parameter & 0x7F);
+	}
+
+	private static void send(int controller, int value) throws InvalidMidiDataException {
+		sendOn(CHANNEL, controller, value);
+	}
+
+	private static void sendOn(int channel, int controller, int value) throws InvalidMidiDataException {
+		binding.send(new ShortMessage(ShortMessage.CONTROL_CHANGE, channel, controller, value), -1);
+	}
+
+	/**
+	 * Waits for the binding to apply its updates on the EDT, then compares the
+	 * handle position with the expected fraction of the valid range
+	 */
+	private static void check(final JKnobFancy knob, String sent, double expected) throws Exception {
+		Thread.sleep(20);
+		final double[] pct = new double[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				pct[0] = knob.getHandle(0).getValPct();
+			}
+		});
+		checks++;
+		if(Math.abs(pct[0] - expected) <= TOLERANCE)
+			return;
+		failures++;
+		System.out.println(sent + ": expected " + expected + ", handle at " + pct[0]);
+	}
+
+	/**
+	 * A clockwise knob with a 15 degree range, starting at its max position
+	 */
+	private static JKnobFancy newKnob(){
+		JKnobFancy knob = new JKnobFancy(0, new Point2D.Double(0.5, 0.5), 0.5,
+				JKnobHandleIcons.largeBlueDot(), 100, JKnobHandleIcons.smallGreenDot());
+		knob.setCwDirection(true);
+		knob.setMinPos(15);
+		knob.setMaxPos(0);
+		knob.setMinVal(0);
+		knob.setMaxVal(100);
+		return knob;
+	}
+}
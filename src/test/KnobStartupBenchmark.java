@@ -0,0 +1,93 @@
+package test;
+
+import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.GridLayout;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+import javax.swing.ImageIcon;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+
+import jknobfancy.ArcKnob;
+import jknobfancy.JKnobFancy;
+import jknobfancy.JKnobHandleIcons;
+
+/**
+ * Measures the time from starting to build a window full of knobs until the
+ * first frame of it has been painted.
+ * <br><br>
+ * Usage: <code>KnobStartupBenchmark [eager|lazy] [knob count]</code><br>
+ * Defaults to lazy mode and 1000 knobs. Run each mode in its own JVM so that
+ * one does not warm up the other.
+ * <br><br>
+ * Without a display, the knobs are laid out at their preferred size and the
+ * first frame is a paint of the top left window sized area into an image.
+ */
+@SuppressWarnings("serial")
+public class KnobStartupBenchmark {
+
+	private static final int COLUMNS = 25;
+	private static final int WIDTH = 800;
+	private static final int HEIGHT = 600;
+
+	public static void main(String[] args) throws Exception {
+		final boolean lazy = args.length < 1 || !args[0].equalsIgnoreCase("eager");
+		final int count = args.length < 2 ? 1000 : Integer.parseInt(args[1]);
+
+		// Load the icons up front so that image loading is not part of the measurement
+		final ImageIcon background = JKnobHandleIcons.largeBlueDot();
+		final ImageIcon handle = JKnobHandleIcons.smallGreenDot();
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				final long start = System.nanoTime();
+				JKnobFancy.setLazyDefault(lazy);
+
+				JPanel knobs = new JPanel(new GridLayout(0, COLUMNS)) {
+					private boolean painted;
+
+					@Override
+					public void paint(Graphics g) {
+						super.paint(g);
+						if(painted)
+							return;
+						painted = true;
+						long firstFrame = System.nanoTime();
+						System.out.println((lazy ? "lazy" : "eager") + ", " + count + " knobs: "
+								+ (firstFrame - start) / 1000000.0 + " ms to first frame");
+						System.exit(0);
+					}
+				};
+				for(int i = 0; i < count; i++){
+					ArcKnob knob = new ArcKnob(0, handle, 90, handle, 180, handle,
+							new Point2D.Double(0.5, 0.5), 0.5f, background, 40);
+					knob.setMinVal(0);
+					knob.setMaxVal(100);
+					knobs.add(knob);
+				}
+
+				if(GraphicsEnvironment.isHeadless()){
+					knobs.setSize(knobs.getPreferredSize());
+					knobs.doLayout();
+					BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+					Graphics g = image.createGraphics();
+					g.setClip(0, 0, WIDTH, HEIGHT);
+					knobs.paint(g);
+					g.dispose();
+					return;
+				}
+				
+				JFrame frame = new JFrame("Knob startup benchmark");
+				frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+				frame.getContentPane().add(new JScrollPane(knobs));
+				frame.setSize(WIDTH, HEIGHT);
+				frame.setVisible(true);
+			}
+		});
+	}
+}
@@ -0,0 +1,109 @@
+package test;
+
+import java.awt.geom.Point2D;
+
+import jknobfancy.JKnobFancy;
+import jknobfancy.JKnobFancy.JKnobHandle;
+import jknobfancy.JKnobGroup;
+import jknobfancy.JKnobHandleIcons;
+
+/**
+ * Checks that setting a handle to the ends of its range lands exactly on them,
+ * for every min and max position in 5 degree steps and both directions, including
+ * full circle ranges where the min and max position are the same, and that
+ * linked handles pushed past the ends of their range are pinned to them.
+ * Prints each failure and exits with status 1 if there were any.
+ */
+public class KnobValueRoundTrip {
+
+	/**
+	 * Allowed error as a fraction of the value range
+	 */
+	private static final double TOLERANCE = 1e-9;
+	private static final double VAL_RANGE = 100;
+
+	private static int failures;
+
+	public static void main(String[] args) {
+		JKnobFancy knob = newKnob();
+		JKnobHandle handle = knob.getHandle(0);
+
+		int checks = 0;
+		for(int cw = 0; cw < 2; cw++){
+			knob.setCwDirection(cw == 1);
+			for(int min = 0; min < 360; min += 5){
+				for(int max = 0; max < 360; max += 5){
+					knob.setMinPos(min);
+					knob.setMaxPos(max);
+
+					// Start from the middle so both ends are an actual move
+					handle.setValPct(0.5);
+					handle.setValPct(1);
+					check(knob, "setValPct(1)", handle.getValPct(), 1);
+					handle.setValPct(0);
+					check(knob, "setValPct(0)", handle.getValPct(), 0);
+					handle.setVal(100);
+					check(knob, "setVal(100)", handle.getValDouble() / VAL_RANGE, 1);
+					handle.setVal(0);
+					check(knob, "setVal(0)", handle.getValDouble() / VAL_RANGE, 0);
+					checks += 4;
+				}
+			}
+		}
+
+		checks += checkGroupClamping();
+
+		System.out.println(failures + " of " + checks + " endpoint sets failed");
+		if(failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Links two knobs with a ratio of 2 and moves the source so that the target
+	 * is pushed past each end of its range
+	 * @return number of checks made
+	 */
+	private static int checkGroupClamping(){
+		int checks = 0;
+		for(int cw = 0; cw < 2; cw++){
+			for(int min = 0; min < 360; min += 5){
+				for(int max = 0; max < 360; max += 5){
+					JKnobFancy source = newKnob();
+					JKnobFancy target = newKnob();
+					for(JKnobFancy knob : new JKnobFancy[]{source, target}){
+						knob.setCwDirection(cw == 1);
+						knob.setMinPos(min);
+						knob.setMaxPos(max);
+					}
+					JKnobGroup group = new JKnobGroup();
+					group.link(source, 0, target, 0, 2, -50);
+
+					source.getHandle(0).setVal(60);
+					source.getHandle(0).setVal(90);
+					check(target, "linked setVal(130)", target.getHandle(0).getValDouble() / VAL_RANGE, 1);
+					source.getHandle(0).setVal(10);
+					source.getHandle(0).setVal(5);
+					check(target, "linked setVal(-40)", target.getHandle(0).getValDouble() / VAL_RANGE, 0);
+					checks += 2;
+				}
+			}
+		}
+		return checks;
+	}
+
+	private static JKnobFancy newKnob(){
+		JKnobFancy knob = new JKnobFancy(0, new Point2D.Double(0.5, 0.5), 0.5,
+				JKnobHandleIcons.largeBlueDot(), 100, JKnobHandleIcons.smallGreenDot());
+		knob.setMinVal(0);
+		knob.setMaxVal((int) VAL_RANGE);
+		return knob;
+	}
+
+	private static void check(JKnobFancy knob, String set, double actual, double expected){
+		if(Math.abs(actual - expected) <= TOLERANCE)
+			return;
+		failures++;
+		System.out.println((knob.isCwDirection() ? "CW" : "CCW") + " min " + knob.getMinPos()
+				+ " max " + knob.getMaxPos() + ": " + set + " gave " + actual);
+	}
+}
@@ -2,12 +2,14 @@ package test;
 
 import java.awt.Container;
 import java.awt.geom.Point2D;
+import java.util.concurrent.Flow;
 
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 
 import jknobfancy.JKnobFancy;
 import jknobfancy.JKnobHandleIcons;
+import jknobfancy.JKnobValueChange;
 
 import java.awt.event.*;
 
@@ -27,13 +29,26 @@ public class TestKnob extends JComponent {
 		knob.setMaxPos(5);
 		knob.setMinVal(0);
 		knob.setMaxVal(150);
-		knob.addMouseMotionListener(new MouseMotionAdapter() {
-			 
-			 @Override
-			 public void mouseDragged(MouseEvent e) {
-				knob.moveHandles(e);
-				System.out.println("Knob val: " + knob.getHandle(0).getVal());				 
-			 }
+		knob.getValuePublisher().subscribe(new Flow.Subscriber<JKnobValueChange>() {
+			
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+			
+			@Override
+			public void onNext(JKnobValueChange change) {
+				System.out.println("Knob val: " + change.getVal());
+			}
+			
+			@Override
+			public void onError(Throwable throwable) {
+				throwable.printStackTrace();
+			}
+			
+			@Override
+			public void onComplete() {
+			}
 		});
 		thePane.add(knob);
 